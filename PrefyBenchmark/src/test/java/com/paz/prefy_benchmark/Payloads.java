@@ -0,0 +1,49 @@
+package com.paz.prefy_benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The values the benchmarks save - a person is about 85 chars of json, a profile about 1KB
+ * and a list of 1200 persons about 100KB.
+ */
+class Payloads {
+    static final int KB_PERSONS = 11;
+    static final int HUNDRED_KB_PERSONS = 1200;
+
+    static class Person {
+        String name;
+        String phone;
+        int age;
+        long id;
+        boolean active;
+
+        Person(int i) {
+            name = "person " + i;
+            phone = "05" + (10000000 + i);
+            age = i % 90;
+            id = 1000000L + i;
+            active = i % 2 == 0;
+        }
+    }
+
+    static class Profile {
+        String bio = "prefy is awesome";
+        double score = 4.75;
+        ArrayList<Person> friends = persons(KB_PERSONS);
+    }
+
+    static ArrayList<Person> persons(int size) {
+        ArrayList<Person> persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            persons.add(new Person(i));
+        return persons;
+    }
+
+    static HashMap<String, Person> personsMap(int size) {
+        HashMap<String, Person> map = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            map.put("person_" + i, new Person(i));
+        return map;
+    }
+}
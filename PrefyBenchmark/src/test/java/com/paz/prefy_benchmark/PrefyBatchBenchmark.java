@@ -0,0 +1,62 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyBatch;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Write latency of 1, 10 and 100 keys in one batch vs a sync put per key - a batch is written with a
+ * single commit, a put per key rewrites the file for every key.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyBatchBenchmark {
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void batchVsPerKeyWrites() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        final Prefy prefy = Prefy.open(context, "bench-batch-" + System.nanoTime(), new PrefyOptions());
+        PrefyBench bench = new PrefyBench("plain");
+
+        for (final int keys : new int[]{1, 10, 100}) {
+            String payload = keys + " keys";
+            bench.measure("putIntSync per key", payload, WARMUP, ROUNDS, new PrefyBench.Op() {
+                @Override
+                public void run(int round) {
+                    for (int i = 0; i < keys; i++)
+                        prefy.putIntSync("bench_" + i, i);
+                }
+            });
+            final PrefyBatch batch = new PrefyBatch() {
+                @Override
+                public void edit(PrefyEditor editor) {
+                    for (int i = 0; i < keys; i++)
+                        editor.putInt("bench_" + i, i);
+                }
+            };
+            bench.measure("batchSync", payload, WARMUP, ROUNDS, new PrefyBench.Op() {
+                @Override
+                public void run(int round) {
+                    prefy.batchSync(batch);
+                }
+            });
+        }
+        assertEquals(99, prefy.getInt("bench_99", -1));
+    }
+}
@@ -0,0 +1,132 @@
+package com.paz.prefy_benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Small benchmark harness - runs an operation after a warmup and reports ops/sec, bytes allocated
+ * per op by the calling thread and the p50 / p99 latency of a single op.
+ * Every result is printed and appended to build/reports/prefy-benchmark/results.csv, so runs
+ * before and after a change can be compared.
+ */
+class PrefyBench {
+    private static final File RESULTS = new File("build/reports/prefy-benchmark/results.csv");
+
+    interface Op {
+        void run(int i) throws Exception;
+    }
+
+    private final String mode;
+
+    static class Result {
+        final double opsPerSec;
+        // -1 if the jvm does not count allocations
+        final long bytesPerOp;
+        final long p50Nanos;
+        final long p99Nanos;
+
+        Result(double opsPerSec, long bytesPerOp, long p50Nanos, long p99Nanos) {
+            this.opsPerSec = opsPerSec;
+            this.bytesPerOp = bytesPerOp;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+    }
+
+    /**
+     * @param mode - plain or encrypted, written with every result
+     */
+    PrefyBench(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @param operation  - name of the prefy method
+     * @param payload    - small, 1KB or 100KB
+     * @param warmup     - number of runs that are not measured
+     * @param iterations - number of measured runs
+     * @param op         - gets the run number, so it can vary keys or values
+     * @return the measured numbers
+     */
+    Result measure(String operation, String payload, int warmup, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++)
+            op.run(i);
+
+        long[] latencies = new long[iterations];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long opStart = System.nanoTime();
+            op.run(warmup + i);
+            latencies[i] = System.nanoTime() - opStart;
+        }
+        long total = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(latencies);
+        double opsPerSec = iterations * 1e9 / total;
+        long bytesPerOp = allocatedBefore < 0 ? -1 : allocated / iterations;
+        long p50 = latencies[iterations / 2];
+        long p99 = latencies[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.99) - 1)];
+
+        System.out.println(String.format(Locale.US, "%-9s %-26s %-6s %12.0f ops/s %10d B/op  p50 %9.1fus  p99 %9.1fus",
+                mode, operation, payload, opsPerSec, bytesPerOp, p50 / 1000.0, p99 / 1000.0));
+        report(String.format(Locale.US, "%s,%s,%s,%.0f,%d,%d,%d", mode, operation, payload, opsPerSec, bytesPerOp, p50, p99));
+        return new Result(opsPerSec, bytesPerOp, p50, p99);
+    }
+
+    /**
+     * report latencies that were measured by the caller, for operations that need an untimed setup before every run
+     *
+     * @param operation - name of the prefy method
+     * @param payload   - size of the data
+     * @param latencies - nanos of every run, sorted by this method
+     * @return the measured numbers, without allocations
+     */
+    Result record(String operation, String payload, long[] latencies) {
+        long total = 0;
+        for (long latency : latencies)
+            total += latency;
+        Arrays.sort(latencies);
+        int iterations = latencies.length;
+        double opsPerSec = iterations * 1e9 / Math.max(1, total);
+        long p50 = latencies[iterations / 2];
+        long p99 = latencies[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.99) - 1)];
+        System.out.println(String.format(Locale.US, "%-9s %-26s %-6s %12.0f ops/s %10d B/op  p50 %9.1fus  p99 %9.1fus",
+                mode, operation, payload, opsPerSec, -1, p50 / 1000.0, p99 / 1000.0));
+        report(String.format(Locale.US, "%s,%s,%s,%.0f,%d,%d,%d", mode, operation, payload, opsPerSec, -1, p50, p99));
+        return new Result(opsPerSec, -1, p50, p99);
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, -1 if the jvm does not count it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static synchronized void report(String line) {
+        boolean header = !RESULTS.exists();
+        RESULTS.getParentFile().mkdirs();
+        try (Writer out = new FileWriter(RESULTS, true)) {
+            if (header)
+                out.write("mode,operation,payload,ops_per_sec,bytes_per_op,p50_ns,p99_ns\n");
+            out.write(line);
+            out.write('\n');
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.paz.prefy_benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.paz.prefy_lib.PrefyBinaryCodec;
+import com.paz.prefy_lib.PrefyCodec;
+import com.paz.prefy_lib.PrefyJsonCodec;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Saved size and encode / decode time of the json and the binary codecs.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyCodecBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    private final Gson gson = new Gson();
+    private final PrefyCodec[] codecs = {new PrefyJsonCodec(), new PrefyBinaryCodec()};
+    private final PrefyBench bench = new PrefyBench("plain");
+
+    @Test
+    public void smallObject() throws Exception {
+        run("small", new Payloads.Person(1), gson.getAdapter(Payloads.Person.class));
+    }
+
+    @Test
+    public void objectWithList() throws Exception {
+        run("1KB", new Payloads.Profile(), gson.getAdapter(Payloads.Profile.class));
+    }
+
+    @Test
+    public void largeList() throws Exception {
+        run("100KB", Payloads.persons(Payloads.HUNDRED_KB_PERSONS), gson.getAdapter(new TypeToken<ArrayList<Payloads.Person>>() {
+        }));
+    }
+
+    @Test
+    public void numbersMap() throws Exception {
+        HashMap<String, Long> map = new HashMap<>();
+        for (int i = 0; i < 500; i++)
+            map.put("key" + i, i * 7919L);
+        run("500 longs", map, gson.getAdapter(new TypeToken<HashMap<String, Long>>() {
+        }));
+    }
+
+    private <T> void run(String payload, final T value, final TypeAdapter<T> adapter) throws Exception {
+        for (final PrefyCodec codec : codecs) {
+            final String data = codec.encode(value, adapter);
+            assertEquals(gson.toJson(value), gson.toJson(codec.decode(data, adapter)));
+
+            String name = codec.getClass().getSimpleName();
+            bench.measure("encode " + name, payload, WARMUP, ITERATIONS, new PrefyBench.Op() {
+                @Override
+                public void run(int i) throws Exception {
+                    codec.encode(value, adapter);
+                }
+            });
+            bench.measure("decode " + name, payload, WARMUP, ITERATIONS, new PrefyBench.Op() {
+                @Override
+                public void run(int i) throws Exception {
+                    codec.decode(data, adapter);
+                }
+            });
+            System.out.println(payload + " " + name + ": " + data.length() + " chars");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Size of the shared preferences file, write time and read time of lists of 1KB, 50KB and 500KB,
+ * saved as they are and compressed with deflate.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyCompressionBenchmark {
+    private static final int[] PERSONS = {Payloads.KB_PERSONS, 550, 5500};
+    private static final String[] PAYLOADS = {"1KB", "50KB", "500KB"};
+
+    @Test
+    public void plain() throws Exception {
+        run("plain", new PrefyOptions());
+    }
+
+    @Test
+    public void deflate() throws Exception {
+        run("deflate", new PrefyOptions().setCompression(512));
+    }
+
+    private void run(String mode, PrefyOptions options) throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        PrefyBench bench = new PrefyBench(mode);
+        for (int p = 0; p < PERSONS.length; p++) {
+            String name = "bench-compression-" + mode + "-" + p + "-" + System.nanoTime();
+            final Prefy prefy = Prefy.open(context, name, options);
+            final ArrayList<Payloads.Person> persons = Payloads.persons(PERSONS[p]);
+            // fewer runs for larger values, every sync write rewrites the whole file
+            int iterations = Math.max(20, 2000 / (p * 10 + 1));
+            bench.measure("putArrayListSync", PAYLOADS[p], iterations / 10, iterations, new PrefyBench.Op() {
+                @Override
+                public void run(int i) {
+                    prefy.putArrayListSync("persons", persons);
+                }
+            });
+            bench.measure("getList", PAYLOADS[p], iterations / 10, iterations, new PrefyBench.Op() {
+                @Override
+                public void run(int i) {
+                    prefy.getList("persons", null, Payloads.Person.class);
+                }
+            });
+            File file = new File(context.getDataDir(), "shared_prefs/" + context.getPackageName() + "-Prefy-" + name + ".xml");
+            System.out.println(String.format(Locale.US, "%-9s %-26s %-6s %12d bytes on disk", mode, "file size", PAYLOADS[p], file.length()));
+            assertEquals(PERSONS[p], prefy.getList("persons", null, Payloads.Person.class).size());
+        }
+    }
+}
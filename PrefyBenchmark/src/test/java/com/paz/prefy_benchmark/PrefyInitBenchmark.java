@@ -0,0 +1,66 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Startup time of a store - blocking open vs openAsync, the time of the caller and the time until
+ * the store is ready. Only plain stores - there is no android key store on the jvm, so the cost of
+ * creating the keys of an encrypted store can be measured only on a device.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyInitBenchmark {
+    private static final int RUNS = 30;
+
+    @Test
+    public void plainInit() {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-init-" + System.nanoTime();
+        long[] blocking = new long[RUNS];
+        long[] caller = new long[RUNS];
+        long[] ready = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            // a new store every run, so nothing is loaded yet
+            long start = System.nanoTime();
+            Prefy prefy = Prefy.open(context, name + "-sync-" + i, new PrefyOptions());
+            prefy.getInt("first", 0);
+            blocking[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            prefy = Prefy.openAsync(context, name + "-async-" + i, new PrefyOptions(), null);
+            caller[i] = System.nanoTime() - start;
+            assertTrue(prefy.awaitReady(10000));
+            ready[i] = System.nanoTime() - start;
+        }
+        PrefyBench bench = new PrefyBench("plain");
+        bench.record("open", "empty", blocking);
+        bench.record("openAsync caller", "empty", caller);
+        bench.record("openAsync ready", "empty", ready);
+    }
+
+    @Test
+    public void readBeforeReadyReturnsDefault() {
+        Context context = ApplicationProvider.getApplicationContext();
+        Prefy prefy = Prefy.openAsync(context, "bench-timeout-" + System.nanoTime(),
+                new PrefyOptions().setReadTimeout(0), null);
+        if (!prefy.isReady())
+            assertEquals(7, prefy.getInt("missing", 7));
+        assertTrue(prefy.awaitReady(10000));
+        assertEquals(7, prefy.getInt("missing", 7));
+    }
+}
@@ -0,0 +1,66 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 10k appends to a list of 10k elements - appendToList, that saves only the change, against reading
+ * the list, adding the element and writing all of it back.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyListDeltaBenchmark {
+    private static final int ELEMENTS = 10000;
+    private static final int APPENDS = 10000;
+    private static final int WARMUP = 100;
+
+    @Test
+    public void appends() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        PrefyBench bench = new PrefyBench("plain");
+
+        final Prefy deltas = open(context, "bench-deltas-");
+        bench.measure("appendToList", "10k", WARMUP, APPENDS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                deltas.appendToList("list", "element " + i);
+            }
+        });
+        assertEquals(ELEMENTS + WARMUP + APPENDS, deltas.getList("list", null, String.class).size());
+
+        final Prefy rewrite = open(context, "bench-rewrite-");
+        bench.measure("getList + putArrayList", "10k", WARMUP, APPENDS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                ArrayList<String> list = rewrite.getList("list", null, String.class);
+                list.add("element " + i);
+                rewrite.putArrayList("list", list);
+            }
+        });
+        assertEquals(ELEMENTS + WARMUP + APPENDS, rewrite.getList("list", null, String.class).size());
+    }
+
+    private static Prefy open(Context context, String name) {
+        Prefy prefy = Prefy.open(context, name + System.nanoTime(), new PrefyOptions());
+        ArrayList<String> list = new ArrayList<>();
+        for (int i = 0; i < ELEMENTS; i++)
+            list.add("element " + i);
+        prefy.putArrayListSync("list", list);
+        return prefy;
+    }
+}
@@ -0,0 +1,396 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyBatch;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyElementCallback;
+import com.paz.prefy_lib.PrefyListIterator;
+import com.paz.prefy_lib.PrefyOptions;
+import com.paz.prefy_lib.PrefyUpdater;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cost of every public read and write method of Prefy for a small primitive, a 1KB object and a
+ * 100KB list, over plain shared preferences and over an encrypted stand-in.
+ * Runs on the jvm with Robolectric, which uses the real android SharedPreferences implementation.
+ * Allocation is counted for the calling thread only - the disk write of apply runs on another thread.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyMethodsBenchmark {
+    private static final String SMALL = "small";
+    private static final String KB = "1KB";
+    private static final String HUNDRED_KB = "100KB";
+
+    private final String mode;
+    private PrefyBench bench;
+    private Prefy prefy;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static Collection<Object[]> modes() {
+        return Arrays.asList(new Object[][]{{"plain"}, {"encrypted"}});
+    }
+
+    public PrefyMethodsBenchmark(String mode) {
+        this.mode = mode;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        // a new store for every test, so values of one test do not slow down the next
+        String name = "bench-" + mode + "-" + System.nanoTime();
+        SharedPreferences sharedPreferences = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        if (mode.equals("encrypted"))
+            sharedPreferences = new StandInEncryptedPreferences(sharedPreferences);
+        prefy = Prefy.open(context, name, sharedPreferences, new PrefyOptions());
+        bench = new PrefyBench(mode);
+    }
+
+    @Test
+    public void primitives() throws Exception {
+        bench.measure("putInt", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putInt("int", i);
+            }
+        });
+        bench.measure("putIntSync", SMALL, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putIntSync("int", i);
+            }
+        });
+        bench.measure("getInt", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getInt("int", 0);
+            }
+        });
+        bench.measure("putLong", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putLong("long", i * 31L);
+            }
+        });
+        bench.measure("getLong", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getLong("long", 0);
+            }
+        });
+        bench.measure("putFloat", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putFloat("float", i / 3f);
+            }
+        });
+        bench.measure("getFloat", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getFloat("float", 0);
+            }
+        });
+        bench.measure("putDouble", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putDouble("double", i / 3d);
+            }
+        });
+        bench.measure("getDouble", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getDouble("double", 0);
+            }
+        });
+        bench.measure("putBoolean", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putBoolean("boolean", i % 2 == 0);
+            }
+        });
+        bench.measure("getBoolean", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getBoolean("boolean", false);
+            }
+        });
+        bench.measure("putString", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putString("string", "value " + i);
+            }
+        });
+        bench.measure("putStringSync", SMALL, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putStringSync("string", "value " + i);
+            }
+        });
+        bench.measure("getString", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getString("string", null);
+            }
+        });
+        final Set<String> set = new HashSet<>(Arrays.asList("a", "b", "c", "d"));
+        bench.measure("putStringSet", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putStringSet("set", set);
+            }
+        });
+        bench.measure("getStringSet", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getStringSet("set", null);
+            }
+        });
+        bench.measure("incrementInt", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.incrementInt("counter", 1);
+            }
+        });
+        bench.measure("compareAndSet", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.compareAndSet("cas", i, i + 1);
+            }
+        });
+        bench.measure("remove", SMALL, 5000, 20000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.remove("missing");
+            }
+        });
+        assertEquals(25000, prefy.getInt("counter", 0));
+    }
+
+    @Test
+    public void objects() throws Exception {
+        final Payloads.Profile profile = new Payloads.Profile();
+        final Payloads.Person[] array = Payloads.persons(Payloads.KB_PERSONS).toArray(new Payloads.Person[0]);
+        final ArrayList<Payloads.Person> list = Payloads.persons(Payloads.KB_PERSONS);
+        final HashMap<String, Payloads.Person> map = Payloads.personsMap(Payloads.KB_PERSONS);
+
+        bench.measure("putObject", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putObject("profile", profile);
+            }
+        });
+        bench.measure("putObjectSync", KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putObjectSync("profile", profile);
+            }
+        });
+        bench.measure("getObject", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getObject("profile", null, Payloads.Profile.class);
+            }
+        });
+        bench.measure("update", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.update("profile", Payloads.Profile.class, new PrefyUpdater<Payloads.Profile>() {
+                    @Override
+                    public Payloads.Profile update(Payloads.Profile current) {
+                        current.score++;
+                        return current;
+                    }
+                });
+            }
+        });
+        bench.measure("putArray", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putArray("array", array);
+            }
+        });
+        bench.measure("getArray", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getArray("array", null, Payloads.Person[].class);
+            }
+        });
+        bench.measure("putArrayList", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putArrayList("list", list);
+            }
+        });
+        bench.measure("getArrayList", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getArrayList("list", null);
+            }
+        });
+        bench.measure("getList", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getList("list", null, Payloads.Person.class);
+            }
+        });
+        bench.measure("putHashMap", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putHashMap("map", map);
+            }
+        });
+        bench.measure("getHashMap", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getHashMap("map", null);
+            }
+        });
+        bench.measure("getMap", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getMap("map", null, String.class, Payloads.Person.class);
+            }
+        });
+        assertEquals(Payloads.KB_PERSONS, prefy.getList("list", null, Payloads.Person.class).size());
+    }
+
+    @Test
+    public void largeValues() throws Exception {
+        final ArrayList<Payloads.Person> list = Payloads.persons(Payloads.HUNDRED_KB_PERSONS);
+        final HashMap<String, Payloads.Person> map = Payloads.personsMap(Payloads.HUNDRED_KB_PERSONS);
+
+        bench.measure("putArrayList", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putArrayList("list", list);
+            }
+        });
+        bench.measure("putArrayListSync", HUNDRED_KB, 20, 100, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putArrayListSync("list", list);
+            }
+        });
+        bench.measure("getArrayList", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getArrayList("list", null);
+            }
+        });
+        bench.measure("getList", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getList("list", null, Payloads.Person.class);
+            }
+        });
+        bench.measure("putHashMap", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putHashMap("map", map);
+            }
+        });
+        bench.measure("getHashMap", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getHashMap("map", null);
+            }
+        });
+        bench.measure("getMap", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.getMap("map", null, String.class, Payloads.Person.class);
+            }
+        });
+        bench.measure("putLargeList", HUNDRED_KB, 20, 100, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putLargeList("large_list", list, Payloads.Person.class);
+            }
+        });
+        bench.measure("putLargeMap", HUNDRED_KB, 20, 100, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putLargeMap("large_map", map, String.class, Payloads.Person.class);
+            }
+        });
+        bench.measure("iterateList", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                PrefyListIterator<Payloads.Person> iterator = prefy.iterateList("large_list", Payloads.Person.class);
+                while (iterator.hasNext())
+                    iterator.next();
+                iterator.close();
+            }
+        });
+        final int[] count = new int[1];
+        bench.measure("forEachInList", HUNDRED_KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.forEachInList("large_list", Payloads.Person.class, new PrefyElementCallback<Payloads.Person>() {
+                    @Override
+                    public void onElement(Payloads.Person element) {
+                        count[0]++;
+                    }
+                });
+            }
+        });
+        assertEquals(220 * Payloads.HUNDRED_KB_PERSONS, count[0]);
+    }
+
+    @Test
+    public void batches() throws Exception {
+        final Payloads.Profile profile = new Payloads.Profile();
+        final PrefyBatch batch = new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                for (int i = 0; i < 10; i++)
+                    editor.putInt("batch_" + i, i);
+                editor.putObject("profile", profile);
+            }
+        };
+
+        bench.measure("batch", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.batch(batch);
+            }
+        });
+        bench.measure("batchSync", KB, 20, 200, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.batchSync(batch);
+            }
+        });
+        bench.measure("edit.apply", KB, 1000, 5000, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                PrefyEditor editor = prefy.edit();
+                batch.edit(editor);
+                editor.apply();
+            }
+        });
+        assertEquals(9, prefy.getInt("batch_9", -1));
+    }
+}
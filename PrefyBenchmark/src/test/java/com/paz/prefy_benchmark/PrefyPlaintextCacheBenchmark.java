@@ -0,0 +1,92 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyCachedStore;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyOptions;
+import com.paz.prefy_lib.PrefySharedPreferencesStore;
+import com.paz.prefy_lib.PrefyStore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Read latency of an encrypted store without the plaintext cache (every read decrypts), and with it -
+ * a cold key that is read for the first time and a warm key that was read before.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyPlaintextCacheBenchmark {
+    private static final int WARMUP = 1000;
+    private static final int ITERATIONS = 5000;
+
+    @Test
+    public void encryptedReads() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-decrypt-" + System.nanoTime();
+        PrefyStore encrypted = new PrefySharedPreferencesStore(
+                new StandInEncryptedPreferences(context.getSharedPreferences(name, Context.MODE_PRIVATE)));
+
+        final Prefy plain = Prefy.open(context, name, encrypted, new PrefyOptions());
+        final Prefy cached = Prefy.open(context, name + "-cached",
+                new PrefyCachedStore(encrypted, WARMUP + ITERATIONS, 0), new PrefyOptions());
+
+        // a key for every run, so every cold read is a first read
+        Payloads.Profile profile = new Payloads.Profile();
+        PrefyEditor editor = plain.edit();
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            editor.putString("string_" + i, "value " + i);
+            editor.putObject("profile_" + i, profile);
+        }
+        editor.commit();
+
+        PrefyBench bench = new PrefyBench("encrypted");
+        bench.measure("getString", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                plain.getString("string_0", null);
+            }
+        });
+        bench.measure("getString cold", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                cached.getString("string_" + i, null);
+            }
+        });
+        bench.measure("getString warm", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                cached.getString("string_0", null);
+            }
+        });
+        bench.measure("getObject", "1KB", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                plain.getObject("profile_0", null, Payloads.Profile.class);
+            }
+        });
+        bench.measure("getObject cold", "1KB", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                cached.getObject("profile_" + i, null, Payloads.Profile.class);
+            }
+        });
+        bench.measure("getObject warm", "1KB", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                cached.getObject("profile_0", null, Payloads.Profile.class);
+            }
+        });
+        assertEquals("value 7", cached.getString("string_7", null));
+    }
+}
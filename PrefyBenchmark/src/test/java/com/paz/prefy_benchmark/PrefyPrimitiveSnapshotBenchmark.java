@@ -0,0 +1,89 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Allocation and latency of the primitive getters with and without the primitive snapshot.
+ * With the snapshot the getters must not allocate at all.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyPrimitiveSnapshotBenchmark {
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void primitiveReads() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-snapshot-" + System.nanoTime();
+        final Prefy prefy = Prefy.open(context, name, context.getSharedPreferences(name, Context.MODE_PRIVATE), new PrefyOptions());
+        prefy.edit()
+                .putInt("int", 42)
+                .putLong("long", 42L << 40)
+                .putFloat("float", 4.2f)
+                .putDouble("double", 4.2)
+                .putBoolean("boolean", true)
+                .commit();
+
+        measure("sp", prefy, false);
+        prefy.enablePrimitiveSnapshot();
+        measure("snapshot", prefy, true);
+        assertEquals(42, prefy.getInt("int", 0));
+    }
+
+    private void measure(String mode, final Prefy prefy, boolean allocationFree) throws Exception {
+        PrefyBench bench = new PrefyBench(mode);
+        PrefyBench.Result[] results = {
+                bench.measure("getInt", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+                    @Override
+                    public void run(int i) {
+                        prefy.getInt("int", 0);
+                    }
+                }),
+                bench.measure("getLong", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+                    @Override
+                    public void run(int i) {
+                        prefy.getLong("long", 0);
+                    }
+                }),
+                bench.measure("getFloat", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+                    @Override
+                    public void run(int i) {
+                        prefy.getFloat("float", 0);
+                    }
+                }),
+                bench.measure("getDouble", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+                    @Override
+                    public void run(int i) {
+                        prefy.getDouble("double", 0);
+                    }
+                }),
+                bench.measure("getBoolean", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+                    @Override
+                    public void run(int i) {
+                        prefy.getBoolean("boolean", false);
+                    }
+                })
+        };
+        if (allocationFree) {
+            for (PrefyBench.Result result : results) {
+                if (result.bytesPerOp >= 0)
+                    assertEquals(0, result.bytesPerOp);
+            }
+        }
+    }
+}
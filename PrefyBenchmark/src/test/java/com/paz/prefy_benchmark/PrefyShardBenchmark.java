@@ -0,0 +1,88 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Write throughput of 8 threads that write sync to a store of 10k keys, with the keys in 1, 4 and 16
+ * shared preferences files - with more shards the writes of different threads go to different files
+ * and each write rewrites a smaller file.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyShardBenchmark {
+    private static final int[] SHARDS = {1, 4, 16};
+    private static final int KEYS = 10000;
+    private static final int THREADS = 8;
+    private static final int WRITES_PER_THREAD = 100;
+
+    @Test
+    public void parallelSyncWrites() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        PrefyBench bench = new PrefyBench("plain");
+        for (int shards : SHARDS) {
+            String name = "bench-shards-" + shards + "-" + System.nanoTime();
+            final Prefy prefy = Prefy.open(context, name, new PrefyOptions().setShards(shards));
+            PrefyEditor editor = prefy.edit();
+            for (int i = 0; i < KEYS; i++)
+                editor.putString("key_" + i, "value of key number " + i);
+            editor.commit();
+
+            final long[] latencies = new long[THREADS * WRITES_PER_THREAD];
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                                // every thread writes keys of its own
+                                String key = "key_" + (thread + THREADS * i) % KEYS;
+                                long opStart = System.nanoTime();
+                                prefy.putStringSync(key, "value " + i);
+                                latencies[thread * WRITES_PER_THREAD + i] = System.nanoTime() - opStart;
+                            }
+                        } catch (Throwable e) {
+                            failure.set(e);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            long wallStart = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            long wall = System.nanoTime() - wallStart;
+            assertNull(failure.get());
+
+            bench.record("putStringSync " + THREADS + " threads " + shards + " shards", "10k keys", latencies);
+            System.out.println(String.format(Locale.US, "%d shards: %.0f writes/s from %d threads",
+                    shards, latencies.length * 1e9 / wall, THREADS));
+            assertEquals("value " + (WRITES_PER_THREAD - 1), prefy.getString("key_" + THREADS * (WRITES_PER_THREAD - 1), null));
+        }
+    }
+}
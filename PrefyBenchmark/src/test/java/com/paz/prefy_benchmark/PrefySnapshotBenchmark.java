@@ -0,0 +1,129 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyOptions;
+import com.paz.prefy_lib.PrefySharedPreferencesStore;
+import com.paz.prefy_lib.PrefySnapshot;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reading a settings screen - 10 and 100 keys of mixed types, one by one against one getAll snapshot,
+ * in a store of 500 keys.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefySnapshotBenchmark {
+    private static final int STORE_KEYS = 500;
+    private static final int[] READ_KEYS = {10, 100};
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    public void plain() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-snapshot-" + System.nanoTime();
+        run("plain", name, context.getSharedPreferences(name, Context.MODE_PRIVATE));
+    }
+
+    @Test
+    public void encrypted() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-snapshot-enc-" + System.nanoTime();
+        run("encrypted", name, new StandInEncryptedPreferences(context.getSharedPreferences(name, Context.MODE_PRIVATE)));
+    }
+
+    private void run(String mode, String name, SharedPreferences preferences) throws Exception {
+        final Prefy prefy = Prefy.open(ApplicationProvider.<Context>getApplicationContext(), name,
+                new PrefySharedPreferencesStore(preferences), new PrefyOptions());
+        PrefyEditor editor = prefy.edit();
+        for (int i = 0; i < STORE_KEYS; i++) {
+            // string, int, boolean and object keys in turn
+            switch (i % 4) {
+                case 0:
+                    editor.putString("key_" + i, "value " + i);
+                    break;
+                case 1:
+                    editor.putInt("key_" + i, i);
+                    break;
+                case 2:
+                    editor.putBoolean("key_" + i, i % 3 == 0);
+                    break;
+                default:
+                    editor.putObject("key_" + i, new Payloads.Person(i));
+            }
+        }
+        editor.commit();
+
+        PrefyBench bench = new PrefyBench(mode);
+        for (final int count : READ_KEYS) {
+            final String[] keys = new String[count];
+            for (int i = 0; i < count; i++)
+                keys[i] = "key_" + i;
+            String payload = count + " keys";
+            bench.measure("get one by one", payload, WARMUP, ITERATIONS, new PrefyBench.Op() {
+                @Override
+                public void run(int run) {
+                    for (int i = 0; i < count; i++)
+                        read(prefy, i);
+                }
+            });
+            bench.measure("getAll", payload, WARMUP, ITERATIONS, new PrefyBench.Op() {
+                @Override
+                public void run(int run) {
+                    PrefySnapshot snapshot = prefy.getAll(keys);
+                    for (int i = 0; i < count; i++)
+                        read(snapshot, i);
+                }
+            });
+        }
+        assertEquals(5, prefy.getAll("key_5").getInt("key_5", 0));
+    }
+
+    private static void read(Prefy prefy, int i) {
+        String key = "key_" + i;
+        switch (i % 4) {
+            case 0:
+                prefy.getString(key, null);
+                break;
+            case 1:
+                prefy.getInt(key, 0);
+                break;
+            case 2:
+                prefy.getBoolean(key, false);
+                break;
+            default:
+                prefy.getObject(key, null, Payloads.Person.class);
+        }
+    }
+
+    private static void read(PrefySnapshot snapshot, int i) {
+        String key = "key_" + i;
+        switch (i % 4) {
+            case 0:
+                snapshot.getString(key, null);
+                break;
+            case 1:
+                snapshot.getInt(key, 0);
+                break;
+            case 2:
+                snapshot.getBoolean(key, false);
+                break;
+            default:
+                snapshot.getObject(key, null, Payloads.Person.class);
+        }
+    }
+}
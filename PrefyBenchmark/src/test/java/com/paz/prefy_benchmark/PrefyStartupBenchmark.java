@@ -0,0 +1,106 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cold start with a 1MB store - the first getBoolean on the main thread right after the store was
+ * opened, and the same read after preload had the time the app spends on its first frame.
+ * Every run opens a new copy of the file, so shared preferences reads it from the disk.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyStartupBenchmark {
+    private static final int RUNS = 30;
+    // time between the start of preload and the first read, like building the first screen
+    private static final long FIRST_FRAME_MILLIS = 50;
+
+    @Test
+    public void firstRead() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        File source = createStore(context);
+
+        PrefyBench bench = new PrefyBench("plain");
+        long[] cold = new long[RUNS];
+        long[] preloaded = new long[RUNS];
+        long coldWait = 0;
+        long preloadedWait = 0;
+        for (int i = 0; i < RUNS; i++) {
+            Prefy prefy = open(context, source, "cold-" + i);
+            long start = System.nanoTime();
+            prefy.getBoolean("flag", false);
+            cold[i] = System.nanoTime() - start;
+            coldWait += prefy.getMainThreadWaitMillis();
+
+            prefy = open(context, source, "preloaded-" + i);
+            prefy.preload();
+            Thread.sleep(FIRST_FRAME_MILLIS);
+            start = System.nanoTime();
+            prefy.getBoolean("flag", false);
+            preloaded[i] = System.nanoTime() - start;
+            preloadedWait += prefy.getMainThreadWaitMillis();
+            assertTrue(prefy.awaitLoaded(1000));
+        }
+        bench.record("first getBoolean", "1MB", cold);
+        bench.record("first getBoolean preload", "1MB", preloaded);
+        System.out.println("main thread wait: " + coldWait / RUNS + "ms without preload, " + preloadedWait / RUNS + "ms with preload");
+    }
+
+    /**
+     * @return a shared preferences file of about 1MB
+     */
+    private static File createStore(Context context) throws IOException {
+        String name = "bench-startup-source-" + System.nanoTime();
+        SharedPreferences preferences = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putBoolean("flag", true);
+        for (int i = 0; i < 10000; i++)
+            editor.putString("key_" + i, "value of key number " + i + " padded to about one hundred bytes ......................");
+        editor.commit();
+        return file(context, name);
+    }
+
+    /**
+     * copy the file to a new named store, that shared preferences did not read yet
+     */
+    private static Prefy open(Context context, File source, String name) throws IOException {
+        String storeName = "bench-startup-" + name + "-" + System.nanoTime();
+        copy(source, file(context, context.getPackageName() + "-Prefy-" + storeName));
+        return Prefy.open(context, storeName, new PrefyOptions());
+    }
+
+    private static File file(Context context, String name) {
+        return new File(context.getDataDir(), "shared_prefs/" + name + ".xml");
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        to.getParentFile().mkdirs();
+        try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                out.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyLogStore;
+import com.paz.prefy_lib.PrefyOptions;
+import com.paz.prefy_lib.PrefySharedPreferencesStore;
+import com.paz.prefy_lib.PrefyStore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Write throughput of a small change in a store that already holds 1k, 10k and 100k keys -
+ * shared preferences rewrites the whole file, the append log writes only the change.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyStoreBenchmark {
+    private static final int[] KEYS = {1000, 10000, 100000};
+
+    @Test
+    public void sharedPreferences() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        for (int keys : KEYS) {
+            String name = "bench-sp-" + keys + "-" + System.nanoTime();
+            run("sp", keys, new PrefySharedPreferencesStore(context.getSharedPreferences(name, Context.MODE_PRIVATE)), name);
+        }
+    }
+
+    @Test
+    public void appendLog() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        for (int keys : KEYS) {
+            String name = "bench-log-" + keys + "-" + System.nanoTime();
+            PrefyLogStore store = new PrefyLogStore(new File(context.getFilesDir(), name + ".log"));
+            run("log", keys, store, name);
+            store.close();
+        }
+    }
+
+    private void run(String mode, int keys, PrefyStore store, String name) throws Exception {
+        final Prefy prefy = Prefy.open(ApplicationProvider.<Context>getApplicationContext(), name, store, new PrefyOptions());
+        PrefyEditor editor = prefy.edit();
+        for (int i = 0; i < keys; i++)
+            editor.putString("key_" + i, "value of key number " + i);
+        editor.commit();
+
+        // each sync write rewrites the whole shared preferences file, so fewer rounds for larger stores
+        int rounds = Math.max(10, 200000 / keys);
+        PrefyBench bench = new PrefyBench(mode);
+        String payload = keys / 1000 + "k keys";
+        bench.measure("putString", payload, rounds, rounds * 10, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putString("hot", "value " + i);
+            }
+        });
+        bench.measure("putStringSync", payload, rounds / 10, rounds, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                prefy.putStringSync("hot", "value " + i);
+            }
+        });
+        assertEquals("value of key number 0", prefy.getString("key_0", null));
+    }
+}
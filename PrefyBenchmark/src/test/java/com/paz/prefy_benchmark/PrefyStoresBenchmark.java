@@ -0,0 +1,68 @@
+package com.paz.prefy_benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.paz.prefy_lib.Prefy;
+import com.paz.prefy_lib.PrefyEditor;
+import com.paz.prefy_lib.PrefyOptions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Latency of writing a small hot key when it lives next to large values (one monolithic store)
+ * vs in a small store of its own.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyStoresBenchmark {
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void monolithicVsOwnStore() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        String name = "bench-stores-" + System.nanoTime();
+        final Prefy monolithic = Prefy.open(context, name + "-monolithic", new PrefyOptions());
+        final Prefy hot = Prefy.open(context, name + "-hot", new PrefyOptions());
+        Prefy blobs = Prefy.open(context, name + "-blobs", new PrefyOptions());
+
+        // about 650KB of rarely changed values
+        ArrayList<String> blob = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            blob.add("rarely touched value number " + i);
+        PrefyEditor monolithicEditor = monolithic.edit();
+        PrefyEditor blobsEditor = blobs.edit();
+        for (int i = 0; i < 20; i++) {
+            monolithicEditor.putArrayList("blob_" + i, blob);
+            blobsEditor.putArrayList("blob_" + i, blob);
+        }
+        monolithicEditor.commit();
+        blobsEditor.commit();
+
+        PrefyBench bench = new PrefyBench("plain");
+        bench.measure("putIntSync monolithic", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                monolithic.putIntSync("position", i);
+            }
+        });
+        bench.measure("putIntSync own store", "small", WARMUP, ITERATIONS, new PrefyBench.Op() {
+            @Override
+            public void run(int i) {
+                hot.putIntSync("position", i);
+            }
+        });
+        assertEquals(WARMUP + ITERATIONS - 1, hot.getInt("position", -1));
+    }
+}
@@ -0,0 +1,331 @@
+package com.paz.prefy_benchmark;
+
+import android.content.SharedPreferences;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stand-in for EncryptedSharedPreferences on the jvm, where there is no android key store.
+ * Like the real one it encrypts the keys deterministically (AES-CTR with a synthetic iv, as AES-SIV does)
+ * and the values with AES-GCM and a random iv, and saves both as Base64 - so every read and write
+ * pays a comparable crypto cost.
+ */
+class StandInEncryptedPreferences implements SharedPreferences {
+    private static final byte STRING = 0;
+    private static final byte STRING_SET = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte BOOLEAN = 5;
+    private static final int IV_LENGTH = 12;
+    private static final int KEY_IV_LENGTH = 16;
+
+    private final SharedPreferences prefs;
+    private final SecretKeySpec secret;
+    private final Mac mac;
+    private final Cipher cipher;
+    private final Cipher keyCipher;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<OnSharedPreferenceChangeListener, OnSharedPreferenceChangeListener> listeners = new HashMap<>();
+
+    StandInEncryptedPreferences(SharedPreferences prefs) {
+        this.prefs = prefs;
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        secret = new SecretKeySpec(key, "AES");
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            keyCipher = Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized String seal(byte[] plain) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(128, iv));
+            byte[] sealed = cipher.doFinal(plain);
+            byte[] out = Arrays.copyOf(iv, IV_LENGTH + sealed.length);
+            System.arraycopy(sealed, 0, out, IV_LENGTH, sealed.length);
+            return Base64.getEncoder().encodeToString(out);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized byte[] open(String data) {
+        try {
+            byte[] in = Base64.getDecoder().decode(data);
+            cipher.init(Cipher.DECRYPT_MODE, secret, new GCMParameterSpec(128, in, 0, IV_LENGTH));
+            return cipher.doFinal(in, IV_LENGTH, in.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the iv is a mac of the key, so the same key is always encrypted to the same string
+    private synchronized String encryptKey(String key) {
+        try {
+            byte[] plain = key.getBytes(StandardCharsets.UTF_8);
+            byte[] iv = Arrays.copyOf(mac.doFinal(plain), KEY_IV_LENGTH);
+            keyCipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(iv));
+            byte[] encrypted = keyCipher.doFinal(plain);
+            byte[] out = Arrays.copyOf(iv, KEY_IV_LENGTH + encrypted.length);
+            System.arraycopy(encrypted, 0, out, KEY_IV_LENGTH, encrypted.length);
+            return Base64.getEncoder().encodeToString(out);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized String decryptKey(String encrypted) {
+        try {
+            byte[] in = Base64.getDecoder().decode(encrypted);
+            keyCipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(in, 0, KEY_IV_LENGTH));
+            return new String(keyCipher.doFinal(in, KEY_IV_LENGTH, in.length - KEY_IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String encryptValue(byte type, Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            switch (type) {
+                case STRING:
+                    writeString(out, (String) value);
+                    break;
+                case STRING_SET:
+                    Set<?> set = (Set<?>) value;
+                    out.writeInt(set.size());
+                    for (Object item : set)
+                        writeString(out, (String) item);
+                    break;
+                case INT:
+                    out.writeInt((Integer) value);
+                    break;
+                case LONG:
+                    out.writeLong((Long) value);
+                    break;
+                case FLOAT:
+                    out.writeFloat((Float) value);
+                    break;
+                default:
+                    out.writeBoolean((Boolean) value);
+            }
+            return seal(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object decryptValue(String encrypted) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(open(encrypted)));
+            switch (in.readByte()) {
+                case STRING:
+                    return readString(in);
+                case STRING_SET:
+                    int size = in.readInt();
+                    Set<String> set = new HashSet<>();
+                    for (int i = 0; i < size; i++)
+                        set.add(readString(in));
+                    return set;
+                case INT:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case FLOAT:
+                    return in.readFloat();
+                default:
+                    return in.readBoolean();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // writeUTF is limited to 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Object read(String key) {
+        String encrypted = prefs.getString(encryptKey(key), null);
+        return encrypted == null ? null : decryptValue(encrypted);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        Map<String, Object> all = new HashMap<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet())
+            all.put(decryptKey(entry.getKey()), decryptValue((String) entry.getValue()));
+        return all;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object value = read(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        Object value = read(key);
+        return value == null ? defValues : (Set<String>) value;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = read(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = read(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = read(key);
+        return value == null ? defValue : (Float) value;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = read(key);
+        return value == null ? defValue : (Boolean) value;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return prefs.contains(encryptKey(key));
+    }
+
+    @Override
+    public Editor edit() {
+        return new EncryptedEditor(prefs.edit());
+    }
+
+    @Override
+    public synchronized void registerOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+        OnSharedPreferenceChangeListener decrypting = new OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                listener.onSharedPreferenceChanged(StandInEncryptedPreferences.this, key == null ? null : decryptKey(key));
+            }
+        };
+        listeners.put(listener, decrypting);
+        prefs.registerOnSharedPreferenceChangeListener(decrypting);
+    }
+
+    @Override
+    public synchronized void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        OnSharedPreferenceChangeListener decrypting = listeners.remove(listener);
+        if (decrypting != null)
+            prefs.unregisterOnSharedPreferenceChangeListener(decrypting);
+    }
+
+    private class EncryptedEditor implements Editor {
+        private final Editor editor;
+
+        EncryptedEditor(Editor editor) {
+            this.editor = editor;
+        }
+
+        private Editor put(String key, byte type, Object value) {
+            if (value == null)
+                return remove(key);
+            editor.putString(encryptKey(key), encryptValue(type, value));
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return put(key, STRING, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return put(key, STRING_SET, values);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, INT, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, LONG, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, FLOAT, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, BOOLEAN, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            editor.remove(encryptKey(key));
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            editor.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return editor.commit();
+        }
+
+        @Override
+        public void apply() {
+            editor.apply();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.paz.prefy_lib;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Many threads run read-modify-write operations on the same keys, no update may be lost.
+ * The throughput at 1/4/8 threads is written to logcat with the tag PrefyBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PrefyAtomicStressTest {
+    private static final String TAG = "PrefyBenchmark";
+    private static final int OPERATIONS = 2000;
+
+    private Prefy prefy;
+
+    @Before
+    public void setUp() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        prefy = Prefy.open(appContext, "atomic-stress", new PrefyOptions());
+        prefy.remove("counter");
+        prefy.remove("long_counter");
+        prefy.remove("cas");
+        prefy.remove("list");
+    }
+
+    @Test
+    public void incrementLosesNoUpdates() throws Exception {
+        for (int threads : new int[]{1, 4, 8}) {
+            prefy.remove("counter");
+            long time = runThreads(threads, new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < OPERATIONS; i++)
+                        prefy.incrementInt("counter", 1);
+                }
+            });
+            assertEquals(threads * OPERATIONS, prefy.getInt("counter", 0));
+            Log.i(TAG, "incrementInt " + threads + " threads: " + threads * OPERATIONS * 1000000000L / time + " ops/sec");
+        }
+    }
+
+    @Test
+    public void incrementLongLosesNoUpdates() throws Exception {
+        runThreads(8, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < OPERATIONS; i++)
+                    prefy.incrementLong("long_counter", 3);
+            }
+        });
+        assertEquals(8L * OPERATIONS * 3, prefy.getLong("long_counter", 0));
+    }
+
+    @Test
+    public void compareAndSetLosesNoUpdates() throws Exception {
+        prefy.putInt("cas", 0);
+        runThreads(8, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    while (true) {
+                        int current = prefy.getInt("cas", 0);
+                        if (prefy.compareAndSet("cas", current, current + 1))
+                            break;
+                    }
+                }
+            }
+        });
+        assertEquals(8 * OPERATIONS, prefy.getInt("cas", 0));
+    }
+
+    @Test
+    public void updateLosesNoUpdates() throws Exception {
+        final int perThread = 200;
+        runThreads(4, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < perThread; i++) {
+                    prefy.update("list", Integer[].class, new PrefyUpdater<Integer[]>() {
+                        @Override
+                        public Integer[] update(Integer[] current) {
+                            if (current == null)
+                                return new Integer[]{1};
+                            Integer[] next = new Integer[current.length + 1];
+                            System.arraycopy(current, 0, next, 0, current.length);
+                            next[current.length] = 1;
+                            return next;
+                        }
+                    });
+                }
+            }
+        });
+        assertEquals(4 * perThread, prefy.getObject("list", new Integer[0], Integer[].class).length);
+    }
+
+    /**
+     * @return the time it took, in nanos
+     */
+    private long runThreads(int count, final Runnable work) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    work.run();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        return System.nanoTime() - begin;
+    }
+}
@@ -1,25 +1,61 @@
 package com.paz.prefy_lib;
 
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.Looper;
+import android.os.Trace;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyProperties;
-import android.util.Log;
 
 import androidx.security.crypto.EncryptedSharedPreferences;
 import androidx.security.crypto.MasterKey;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.paz.prefy_lib.PrefyMsg.key_already_exist;
 import static com.paz.prefy_lib.PrefyMsg.not_saved;
@@ -31,17 +67,164 @@ import static com.paz.prefy_lib.PrefyMsg.saved_successfully;
 public class Prefy {
     // Constructor init + set instance //
     private static Prefy instance; // me
-    private SharedPreferences sharedPreferences;
+    private static final HashMap<String, Prefy> stores = new HashMap<>();
+    private volatile PrefyStore store;
+    // opened when the store is ready, see initAsync
+    private final CountDownLatch ready = new CountDownLatch(1);
+    // opened when the store read its file, see preload
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    // time the main thread waited for the store and its file
+    private final AtomicLong mainThreadWaitNanos = new AtomicLong();
+    private final long readTimeout;
+    private static ExecutorService initExecutor;
     private final Gson gson;
+    private final PrefyCodec codec;
+    // codecs that are tried when reading, so values that were saved with another codec still decode
+    private final PrefyCodec[] decoders;
+    private final PrefyCompression compression;
+    private final PrefyExpiry expiry;
+    private final PrefyDeltas deltas;
+    private static final PrefyCodec[] DEFAULT_DECODERS = {new PrefyBinaryCodec(), new PrefyJsonCodec()};
+    // resolved adapters and parameterized types, so reads do not look them up again
+    private final ConcurrentHashMap<Type, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, Type> listTypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, ConcurrentHashMap<Type, Type>> mapTypes = new ConcurrentHashMap<>();
+    // the element types of getArrayList and getHashMap are erased, so they are read as Object
+    private static final Type ERASED_ARRAY_TYPE = new TypeToken<Object[]>() {
+    }.getType();
+    private static final Type ERASED_HASH_MAP_TYPE = new TypeToken<HashMap<Object, Object>>() {
+    }.getType();
+    private volatile PrefyObjectCache objectCache;
+    private volatile PrefyPrimitiveSnapshot snapshot;
+    private volatile PrefyCoalescer coalescer;
+    private PrefyObservers observers;
+    // null unless setMetrics was called, so the calls are not timed
+    volatile PrefyMetrics metrics;
+    private volatile PrefyMainThreadPolicy mainThreadPolicy = PrefyMainThreadPolicy.ALLOW;
+    private volatile PrefyMainThreadListener mainThreadListener;
+    // read-modify-write operations on keys with the same stripe run one at a time
+    private final Object[] keyLocks = new Object[64];
+    private static ScheduledExecutorService writeScheduler;
+    // runs the operations of PrefyAsync one at a time
+    private static ExecutorService ioExecutor;
+    private PrefyAsync async;
+    // low priority work - removing expired keys and orphan files
+    private static ScheduledExecutorService backgroundScheduler;
+    // values from this length are saved in sidecar files, 0 to save all in the store
+    private static final int DEFAULT_LARGE_VALUE_MIN_LENGTH = 64 * 1024;
+    private static final long ORPHAN_CLEANUP_DELAY_MILLIS = 10 * 1000;
+    // a sidecar file that is newer may belong to a write that is not saved yet
+    private static final long ORPHAN_MIN_AGE_MILLIS = 60 * 1000;
+    private final int largeValueMinLength;
+    private final Context appContext;
+    // flushes the coalesced writes when the app goes to the background
+    private final ComponentCallbacks2 flushOnStop = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_UI_HIDDEN)
+                flush();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+        }
+    };
+    // drops the decrypted values when the app goes to the background
+    private final ComponentCallbacks2 lockOnStop = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_UI_HIDDEN)
+                lock();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+        }
+    };
+    private final PrefySidecar sidecar;
+    private final PrefyStoreListener cacheInvalidator = new PrefyStoreListener() {
+        @Override
+        public void onChanged(String key) {
+            PrefyObjectCache cache = objectCache;
+            if (cache == null)
+                return;
+            if (key == null)
+                cache.invalidateAll();
+            else
+                cache.invalidate(key);
+        }
+    };
 
     public static Prefy getInstance() {
         return instance;
     }
 
-    private Prefy(Context appContext, boolean encrypted) {
+    private Prefy(Context appContext, String spName, PrefyOptions options) {
+        if (options.isAppendLog() && options.isEncrypted())
+            throw new IllegalArgumentException("the append log store can not be encrypted");
+        this.appContext = appContext;
         gson = new Gson();
-        String spName = appContext.getPackageName() + "-Prefy";
-        if (encrypted) {
+        for (int i = 0; i < keyLocks.length; i++)
+            keyLocks[i] = new Object();
+        codec = options.getCodec();
+        if (codec instanceof PrefyJsonCodec)
+            decoders = DEFAULT_DECODERS;
+        else
+            decoders = new PrefyCodec[]{codec, DEFAULT_DECODERS[0], DEFAULT_DECODERS[1]};
+        compression = new PrefyCompression(options.getCompressor(), options.getCompressionMinLength());
+        expiry = new PrefyExpiry(this, gson, backgroundScheduler());
+        deltas = new PrefyDeltas(this, gson, backgroundScheduler());
+        if (options.isEncrypted())
+            largeValueMinLength = 0;
+        else
+            largeValueMinLength = options.getLargeValueMinLength() < 0 ? DEFAULT_LARGE_VALUE_MIN_LENGTH : options.getLargeValueMinLength();
+        sidecar = new PrefySidecar(new File(appContext.getFilesDir(), "Prefy/" + spName));
+        readTimeout = options.getReadTimeout();
+    }
+
+    /**
+     * create the store - for encrypted preferences it sets up the key store and Tink, and the append
+     * log is read into memory, which may take a while
+     */
+    private void load(Context appContext, String spName, PrefyOptions options) {
+        int shards = options.getShards();
+        if (shards == 1) {
+            store = openStore(appContext, spName, options);
+        } else {
+            PrefyStore[] stores = new PrefyStore[shards];
+            for (int i = 0; i < shards; i++) {
+                stores[i] = openStore(appContext, spName + "-shard" + i, options);
+                if (stores[i] == null)
+                    break;
+            }
+            if (stores[shards - 1] != null)
+                store = new PrefyShardedStore(stores, options.getShardRouter());
+        }
+        if (!cachedStores().isEmpty())
+            appContext.registerComponentCallbacks(lockOnStop);
+        markReady();
+    }
+
+    /**
+     * @param fileName - name of the shared preferences or log file
+     * @return the store of one file, or null if it could not be opened
+     */
+    private PrefyStore openStore(Context appContext, String fileName, PrefyOptions options) {
+        if (options.isAppendLog()) {
+            try {
+                return new PrefyLogStore(new File(appContext.getFilesDir(), "Prefy/" + fileName + ".log"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (options.isEncrypted()) {
             try {
 
                 KeyGenParameterSpec spec = new KeyGenParameterSpec.Builder(
@@ -55,18 +238,87 @@ public class Prefy {
                 MasterKey masterKey = new MasterKey.Builder(appContext)
                         .setKeyGenParameterSpec(spec)
                         .build();
-                sharedPreferences = EncryptedSharedPreferences.create(
+                PrefyStore encrypted = new PrefySharedPreferencesStore(EncryptedSharedPreferences.create(
                         appContext,
-                        spName,
+                        fileName,
                         masterKey, // masterKey created above
                         EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-                        EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
+                        EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM));
+                if (options.getPlaintextCacheSize() > 0)
+                    encrypted = new PrefyCachedStore(encrypted, options.getPlaintextCacheSize(), options.getPlaintextCacheTtl());
+                return encrypted;
             } catch (GeneralSecurityException | IOException e) {
                 e.printStackTrace();
             }
         } else {
-            sharedPreferences = appContext.getApplicationContext().getSharedPreferences(spName, Context.MODE_PRIVATE);
+            return new PrefySharedPreferencesStore(appContext.getApplicationContext().getSharedPreferences(fileName, Context.MODE_PRIVATE));
+        }
+        return null;
+    }
+
+    private void markReady() {
+        ready.countDown();
+        backgroundScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                deleteOrphanFiles();
+            }
+        }, ORPHAN_CLEANUP_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static Prefy create(Context appContext, String spName, PrefyOptions options) {
+        Prefy prefy = new Prefy(appContext, spName, options);
+        prefy.load(appContext, spName, options);
+        return prefy;
+    }
+
+    /**
+     * load the store on a background thread
+     */
+    private static Future<Prefy> loadAsync(final Prefy prefy, final Context appContext, final String spName,
+                                           final PrefyOptions options, final PrefyInitCallback callback) {
+        FutureTask<Prefy> task = new FutureTask<>(new Callable<Prefy>() {
+            @Override
+            public Prefy call() {
+                prefy.load(appContext, spName, options);
+                if (callback != null)
+                    callback.onReady(prefy);
+                return prefy;
+            }
+        });
+        initExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * @return future that is done when the instance is ready, after the callback was called
+     */
+    private static Future<Prefy> whenReady(final Prefy prefy, final PrefyInitCallback callback) {
+        FutureTask<Prefy> task = new FutureTask<>(new Callable<Prefy>() {
+            @Override
+            public Prefy call() {
+                prefy.awaitReady(Long.MAX_VALUE);
+                if (callback != null)
+                    callback.onReady(prefy);
+                return prefy;
+            }
+        });
+        initExecutor().execute(task);
+        return task;
+    }
+
+    private static synchronized ExecutorService initExecutor() {
+        if (initExecutor == null) {
+            initExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Prefy-init");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
+        return initExecutor;
     }
 
     /**
@@ -77,920 +329,2866 @@ public class Prefy {
      * @return instance of prefy
      */
     public static Prefy init(Context context, boolean encrypted) {
-        if (instance == null)
-            instance = new Prefy(context.getApplicationContext(), encrypted);
-        return instance;
+        return init(context, encrypted, new PrefyJsonCodec());
     }
 
     /**
-     * return the type token of calls
+     * init SharedPreferences with the codec that saves objects, arrays, lists and maps
      *
-     * @param _class - the class you need the token for example String.class or String[].class
-     * @return the type pf the class
+     * @param context   - Application Context
+     * @param encrypted - Boolean, true if need encryption
+     * @param codec     - for example new PrefyBinaryCodec(). values that were saved with another codec can still be read
+     * @return instance of prefy
      */
-    public Type getTypeToken(Type _class) {
-        return TypeToken.get(_class).getType();
-
+    public static Prefy init(Context context, boolean encrypted, PrefyCodec codec) {
+        return init(context, new PrefyOptions().setEncrypted(encrypted).setCodec(codec));
     }
 
     /**
-     * save String to shared preferences
+     * init SharedPreferences
      *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @param context - Application Context
+     * @param options - encryption, codec and more
+     * @return instance of prefy
      */
-    public void putString(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        editor.apply();
+    public static synchronized Prefy init(Context context, PrefyOptions options) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = create(appContext, appContext.getPackageName() + "-Prefy", options);
+        }
+        return instance;
     }
 
     /**
-     * save String to shared preferences
+     * init SharedPreferences on a background thread, so the key store and Tink setup of encrypted
+     * preferences does not block the app start. getInstance returns the instance right away - reads
+     * that come before it is ready wait up to the read timeout of the options and then return their
+     * default value, writes wait until it is ready.
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param context  - Application Context
+     * @param options  - encryption, codec, read timeout and more
+     * @param callback - called on the background thread when prefy is ready, may be null
+     * @return future of the ready instance
      */
-    public boolean putStringSync(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        return editor.commit();
+    public static synchronized Future<Prefy> initAsync(Context context, PrefyOptions options, PrefyInitCallback callback) {
+        if (instance != null)
+            return whenReady(instance, callback);
+        Context appContext = context.getApplicationContext();
+        String spName = appContext.getPackageName() + "-Prefy";
+        instance = new Prefy(appContext, spName, options);
+        return loadAsync(instance, appContext, spName, options, callback);
     }
 
     /**
-     * get the saved String from shared preferences
+     * open a named store - a Prefy with a shared preferences file of its own.
+     * Keep keys that change often in a small store, so writing them does not rewrite large values.
+     * The store is created on the first call, next calls with the same name return the same instance
+     * and ignore the options.
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param context - Application Context
+     * @param name    - name of the store
+     * @param options - encryption, codec and more
+     * @return instance of prefy for the store
      */
-    public String getString(String key, String defValue) {
-        return sharedPreferences.getString(key, defValue);
+    public static Prefy open(Context context, String name, PrefyOptions options) {
+        synchronized (stores) {
+            Prefy store = stores.get(name);
+            if (store == null) {
+                Context appContext = context.getApplicationContext();
+                store = create(appContext, appContext.getPackageName() + "-Prefy-" + name, options);
+                stores.put(name, store);
+            }
+            return store;
+        }
     }
 
-
     /**
-     * save String to shared preferences if the key is not already exist
+     * open a named store over shared preferences that you created yourself, for example with an
+     * encryption setup of your own or an in memory implementation for tests and benchmarks.
+     * The encrypted flag of the options is ignored. Next calls with the same name return the same instance.
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * @param context           - Application Context, large values are saved under its files dir
+     * @param name              - name of the store
+     * @param sharedPreferences - the preferences prefy reads and writes
+     * @param options           - codec and more
+     * @return instance of prefy for the store
      */
-    public boolean putStringIfKeyNotExist(String key, String value) {
-        if (isKeyExist(key)) {
-            putString(key, value);
-            return true;
-        }
-        return false;
+    public static Prefy open(Context context, String name, SharedPreferences sharedPreferences, PrefyOptions options) {
+        return open(context, name, new PrefySharedPreferencesStore(sharedPreferences), options);
     }
 
     /**
-     * save String to shared preferences if the key is not already exist
+     * open a named store over a storage of your own, for example a PrefyLogStore in a file of your choice.
+     * The encrypted, append log and shards options are ignored - wrap your stores in a PrefyShardedStore
+     * to shard them. Next calls with the same name return the same instance.
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @param context - Application Context, large values are saved under its files dir
+     * @param name    - name of the store
+     * @param store   - the storage prefy reads and writes
+     * @param options - codec and more
+     * @return instance of prefy for the store
      */
-    public PrefyMsg putStringSyncIfKeyNotExist(String key, String value) {
-        if (isKeyExist(key)) {
-            return putStringSync(key, value) ? saved_successfully : not_saved;
+    public static Prefy open(Context context, String name, PrefyStore store, PrefyOptions options) {
+        synchronized (stores) {
+            Prefy prefy = stores.get(name);
+            if (prefy == null) {
+                Context appContext = context.getApplicationContext();
+                // the store is given, so only the options of the values are used
+                PrefyOptions valueOptions = new PrefyOptions().setCodec(options.getCodec()).setReadTimeout(options.getReadTimeout());
+                if (options.getCompressor() != null)
+                    valueOptions.setCompression(options.getCompressionMinLength(), options.getCompressor());
+                // the store may be encrypted, so values are saved in files only if asked for
+                valueOptions.setLargeValueMinLength(Math.max(0, options.getLargeValueMinLength()));
+                prefy = new Prefy(appContext, appContext.getPackageName() + "-Prefy-" + name, valueOptions);
+                prefy.store = store;
+                prefy.markReady();
+                stores.put(name, prefy);
+            }
+            return prefy;
         }
-        return key_already_exist;
     }
 
     /**
-     * get the saved String and remove it from shared preferences
+     * same as open but the store is loaded on a background thread, see initAsync
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param context  - Application Context
+     * @param name     - name of the store
+     * @param options  - encryption, codec, read timeout and more
+     * @param callback - called on the background thread when the store is ready, may be null
+     * @return the instance, reads wait for it to be ready up to the read timeout of the options
      */
-    public String getStringAndRemoveKey(String key, String defValue) {
-        String res = getString(key, defValue);
-        remove(key);
-        return res;
+    public static Prefy openAsync(Context context, String name, PrefyOptions options, PrefyInitCallback callback) {
+        synchronized (stores) {
+            Prefy store = stores.get(name);
+            if (store == null) {
+                Context appContext = context.getApplicationContext();
+                String spName = appContext.getPackageName() + "-Prefy-" + name;
+                store = new Prefy(appContext, spName, options);
+                stores.put(name, store);
+                loadAsync(store, appContext, spName, options, callback);
+            } else if (callback != null) {
+                whenReady(store, callback);
+            }
+            return store;
+        }
     }
 
-
     /**
-     * save boolean to shared preferences
-     *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @return true if shared preferences is ready, always true if prefy was not loaded with initAsync or openAsync
      */
-    public void putBoolean(String key, boolean value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(key, value);
-        editor.apply();
+    public boolean isReady() {
+        return ready.getCount() == 0;
     }
 
     /**
-     * save boolean to shared preferences
+     * wait until shared preferences is ready
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param timeoutMillis - max time to wait
+     * @return true if ready, false if the time is over
      */
-    public boolean putBooleanSync(String key, boolean value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(key, value);
-        return editor.commit();
+    public boolean awaitReady(long timeoutMillis) {
+        try {
+            return ready.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return isReady();
+        }
     }
 
     /**
-     * get the saved boolean from shared preferences
-     *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * read the file of the store on a background thread now, so the first read on the main thread
+     * does not wait for the disk (and for the encryption setup of an encrypted store)
      */
-    public boolean getBoolean(String key, boolean defValue) {
-        return sharedPreferences.getBoolean(key, defValue);
+    public void preload() {
+        preload(null, null);
     }
 
-
     /**
-     * save Boolean to shared preferences if the key is not already exist
+     * read the file of the store and the given keys on a background thread now - with the plaintext
+     * cache of an encrypted store the keys are decrypted then and not on their first read
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * @param keys - keys that are read soon after start
      */
-    public boolean putBooleanIfKeyNotExist(String key, boolean value) {
-        if (isKeyExist(key)) {
-            putBoolean(key, value);
-            return true;
-        }
-        return false;
+    public void preload(String... keys) {
+        preload(keys, null);
     }
 
     /**
-     * save Boolean to shared preferences if the key is not already exist
+     * read the file of the store and decode the given objects on a background thread now - with the
+     * object cache enabled the first getObject of the keys does not decode them
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @param type - the type of the saved objects - for example MyObject.class
+     * @param keys - keys of objects that are read soon after start
      */
-    public PrefyMsg putBooleanSyncIfKeyNotExist(String key, boolean value) {
-        if (isKeyExist(key)) {
-            return putBooleanSync(key, value) ? saved_successfully : not_saved;
-        }
-        return key_already_exist;
+    public void preloadObjects(Type type, String... keys) {
+        preload(keys, type);
     }
 
     /**
-     * get the saved Boolean and remove it from shared preferences
+     * wait until the store read its file, starts preload if it was not started
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param timeoutMillis - max time to wait
+     * @return true if loaded, false if the time is over
      */
-    public boolean getBooleanAndRemoveKey(String key, boolean defValue) {
-        boolean res = getBoolean(key, defValue);
-        remove(key);
-        return res;
+    public boolean awaitLoaded(long timeoutMillis) {
+        if (loaded.getCount() == 0)
+            return true;
+        preload();
+        try {
+            return loaded.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return loaded.getCount() == 0;
+        }
     }
 
     /**
-     * save int to shared preferences
-     *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @return how long the main thread waited for the store to be ready and to read its file - the
+     * part of the app start that preload saves
      */
-    public void putInt(String key, int value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putInt(key, value);
-        editor.apply();
+    public long getMainThreadWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mainThreadWaitNanos.get());
     }
 
     /**
-     * save int to shared preferences
-     *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param keys - keys to read after the load, may be null
+     * @param type - the type to decode the keys to, null to read them as they are
      */
-    public boolean putIntSync(String key, int value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putInt(key, value);
-        return editor.commit();
+    private void preload(final String[] keys, final Type type) {
+        initExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PrefyStore store = store();
+                    if (keys == null)
+                        return;
+                    if (type == null) {
+                        store.getAll(Arrays.asList(keys));
+                        return;
+                    }
+                    for (String key : keys)
+                        readObject("preload", key, null, type);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
     }
 
     /**
-     * get the saved int from shared preferences
+     * return the type token of calls
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param _class - the class you need the token for example String.class or String[].class
+     * @return the type pf the class
      */
-    public int getInt(String key, int defValue) {
-        return sharedPreferences.getInt(key, defValue);
-    }
+    public Type getTypeToken(Type _class) {
+        return TypeToken.get(_class).getType();
 
+    }
 
     /**
-     * save Int to shared preferences if the key is not already exist
+     * create a handle of a key, resolves the type and its adapter once - keep the handle and use it
+     * instead of the key
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * @param name     - the key
+     * @param type     - the type of the value - for example MyObject.class
+     * @param defValue - returned by get when the key not exist
+     * @return handle to get, set and observe the value of the key
      */
-    public boolean putIntIfKeyNotExist(String key, int value) {
-        if (isKeyExist(key)) {
-            putInt(key, value);
-            return true;
-        }
-        return false;
+    public <T> PrefyKey<T> key(String name, Class<T> type, T defValue) {
+        return new PrefyKey<>(this, name, type, defValue);
     }
 
     /**
-     * save Int to shared preferences if the key is not already exist
+     * create a handle of a key with a generic type, resolves the type and its adapter once
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @param name     - the key
+     * @param type     - the type of the value - for example new TypeToken&lt;List&lt;MyObject&gt;&gt;(){}.getType()
+     * @param defValue - returned by get when the key not exist
+     * @return handle to get, set and observe the value of the key
      */
-    public PrefyMsg putIntSyncIfKeyNotExist(String key, int value) {
-        if (isKeyExist(key)) {
-            return putIntSync(key, value) ? saved_successfully : not_saved;
-        }
-        return key_already_exist;
+    public <T> PrefyKey<T> key(String name, Type type, T defValue) {
+        return new PrefyKey<>(this, name, type, defValue);
     }
 
     /**
-     * get the saved Int and remove it from shared preferences
+     * call the listener on the main thread when the key changes. Several changes of the key within
+     * a frame are delivered once. The listener is held weakly - keep a reference to it
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param key      - the key to observe
+     * @param listener - gets the changed key
      */
-    public int getIntAndRemoveKey(String key, int defValue) {
-        int res = getInt(key, defValue);
-        remove(key);
-        return res;
+    public void observe(String key, PrefyChangeListener listener) {
+        observers().add(key, false, listener, null, null, null);
     }
 
     /**
-     * save float to shared preferences
+     * call the listener when the key changes. Several changes of the key within a frame are
+     * delivered once. The listener is held weakly - keep a reference to it
      *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @param key      - the key to observe
+     * @param listener - gets the changed key
+     * @param executor - runs the listener, null for the main thread
      */
-    public void putFloat(String key, float value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putFloat(key, value);
-        editor.apply();
+    public void observe(String key, PrefyChangeListener listener, Executor executor) {
+        observers().add(key, false, listener, executor, null, null);
     }
 
     /**
-     * save float to shared preferences
+     * call the listener when a key that starts with the prefix changes. Several changes of a key
+     * within a frame are delivered once. The listener is held weakly - keep a reference to it
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param prefix   - prefix of the keys to observe
+     * @param listener - gets the changed key, null if all the keys were removed
+     * @param executor - runs the listener, null for the main thread
      */
-    public boolean putFloatSync(String key, float value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putFloat(key, value);
-        return editor.commit();
+    public void observePrefix(String prefix, PrefyChangeListener listener, Executor executor) {
+        observers().add(prefix, true, listener, executor, null, null);
     }
 
     /**
-     * get the saved float from shared preferences
+     * call the listener with the decoded value when the key changes. The value is read through the
+     * object cache, so with the cache enabled it is decoded once for all the readers.
+     * The listener is held weakly - keep a reference to it
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param key      - the key to observe
+     * @param type     - the type of the saved object - for example MyObject.class
+     * @param listener - gets the key and the new value
+     * @param executor - runs the listener, null for the main thread
      */
-    public float getFloat(String key, float defValue) {
-        return sharedPreferences.getFloat(key, defValue);
+    public <T> void observeValue(String key, Type type, PrefyValueListener<T> listener, Executor executor) {
+        observers().add(key, false, listener, executor, type, null);
     }
 
     /**
-     * save Float to shared preferences if the key is not already exist
+     * stop calling a listener that was added with observe or observePrefix
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * @param listener - the listener to remove
      */
-    public boolean putFloatIfKeyNotExist(String key, float value) {
-        if (isKeyExist(key)) {
-            putFloat(key, value);
-            return true;
-        }
-        return false;
+    public void unobserve(PrefyChangeListener listener) {
+        observers().remove(listener);
     }
 
     /**
-     * save Float to shared preferences if the key is not already exist
+     * stop calling a listener that was added with observeValue
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @param listener - the listener to remove
      */
-    public PrefyMsg putFloatSyncIfKeyNotExist(String key, float value) {
-        if (isKeyExist(key)) {
-            return putFloatSync(key, value) ? saved_successfully : not_saved;
-        }
-        return key_already_exist;
+    public void unobserve(PrefyValueListener<?> listener) {
+        observers().remove(listener);
+    }
+
+    synchronized PrefyObservers observers() {
+        if (observers == null)
+            observers = new PrefyObservers(this, writeScheduler());
+        return observers;
     }
 
     /**
-     * get the saved Float and remove it from shared preferences
+     * read several keys together - all the values are from the same version, a write is never seen
+     * in part. Faster than reading the keys one by one, an encrypted store decrypts them in one pass.
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param keys - the keys to read
+     * @return the values of the keys that exist
      */
-    public float getFloatAndRemoveKey(String key, float defValue) {
-        float res = getFloat(key, defValue);
-        remove(key);
-        return res;
+    public PrefySnapshot getAll(String... keys) {
+        return read(new LinkedHashSet<>(Arrays.asList(keys)));
     }
 
     /**
-     * save long to shared preferences
+     * read all the keys together - all the values are from the same version, a write is never seen in part
      *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @return all the saved values
      */
-    public void putLong(String key, long value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putLong(key, value);
-        editor.apply();
+    public PrefySnapshot snapshot() {
+        return read(null);
     }
 
     /**
-     * save long to shared preferences
-     *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param keys - the keys to read, null for all the keys
      */
-    public boolean putLongSync(String key, long value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putLong(key, value);
-        return editor.commit();
+    private PrefySnapshot read(Set<String> keys) {
+        HashMap<String, Object> values = new HashMap<>();
+        PrefyStore store = readStore();
+        if (store == null)
+            return new PrefySnapshot(this, values);
+        if (keys != null)
+            keys = withDeltaKeys(keys);
+        PrefyCoalescer coalescer = this.coalescer;
+        if (coalescer == null) {
+            values.putAll(keys == null ? store.getAll() : store.getAll(keys));
+            return new PrefySnapshot(this, withoutExpired(values));
+        }
+        // a flush holds this lock while it writes, so the store and the pending values do not change together
+        synchronized (coalescer) {
+            values.putAll(keys == null ? store.getAll() : store.getAll(keys));
+            for (Map.Entry<String, Object> change : coalescer.snapshot().entrySet()) {
+                if (keys != null && !keys.contains(change.getKey()))
+                    continue;
+                if (change.getValue() == PrefyEditor.REMOVE)
+                    values.remove(change.getKey());
+                else
+                    values.put(change.getKey(), change.getValue());
+            }
+        }
+        return new PrefySnapshot(this, withoutExpired(values));
+    }
+
+    private HashMap<String, Object> withoutExpired(HashMap<String, Object> values) {
+        values.remove(PrefyExpiry.KEY);
+        values.remove(PrefyDeltas.KEY);
+        Iterator<String> keys = values.keySet().iterator();
+        while (keys.hasNext()) {
+            if (expiry.isExpired(keys.next()))
+                keys.remove();
+        }
+        return withDeltas(values);
     }
 
     /**
-     * get the saved long from shared preferences
-     *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @return the keys and the keys of their list and map changes
      */
-    public long getLong(String key, long defValue) {
-        return sharedPreferences.getLong(key, defValue);
+    private Set<String> withDeltaKeys(Set<String> keys) {
+        HashSet<String> withDeltas = null;
+        for (String key : keys) {
+            if (deltas.has(key)) {
+                if (withDeltas == null)
+                    withDeltas = new HashSet<>(keys);
+                withDeltas.add(PrefyDeltas.PREFIX + key);
+            }
+        }
+        return withDeltas == null ? keys : withDeltas;
     }
 
     /**
-     * save Long to shared preferences if the key is not already exist
-     *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * replace the values that have list and map changes with the merged values
      */
-    public boolean putLongIfKeyNotExist(String key, long value) {
-        if (isKeyExist(key)) {
-            putLong(key, value);
-            return true;
+    private HashMap<String, Object> withDeltas(HashMap<String, Object> values) {
+        ArrayList<String> changed = null;
+        for (String key : values.keySet()) {
+            if (key.startsWith(PrefyDeltas.PREFIX)) {
+                if (changed == null)
+                    changed = new ArrayList<>();
+                changed.add(key);
+            }
         }
-        return false;
+        if (changed == null)
+            return values;
+        TypeAdapter<JsonElement> adapter = adapter(JsonElement.class);
+        for (String deltaKey : changed) {
+            Object records = values.remove(deltaKey);
+            String key = deltaKey.substring(PrefyDeltas.PREFIX.length());
+            Object base = values.get(key);
+            try {
+                JsonElement value = base instanceof String ? decodeStored(key, (String) base, null, adapter) : null;
+                // encoded without a sidecar file, the snapshot holds the value itself
+                values.put(key, compression.compress(codec.encode(deltas.merge(value, (String) records), adapter)));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return values;
     }
 
     /**
-     * save Long to shared preferences if the key is not already exist
+     * start a batch of changes that will be written with a single editor flush
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @return new editor, call apply or commit on it when done
      */
-    public PrefyMsg putLongSyncIfKeyNotExist(String key, long value) {
-        if (isKeyExist(key)) {
-            return putLongSync(key, value) ? saved_successfully : not_saved;
-        }
-        return key_already_exist;
+    public PrefyEditor edit() {
+        return new PrefyEditor(this);
     }
 
     /**
-     * get the saved Long and remove it from shared preferences
-     *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @return the get, put and remove methods that run on the Prefy io thread and return a future
      */
-    public long getLongAndRemoveKey(String key, long defValue) {
-        long res = getLong(key, defValue);
-        remove(key);
-        return res;
+    public synchronized PrefyAsync async() {
+        if (async == null)
+            async = new PrefyAsync(this, ioExecutor());
+        return async;
     }
 
     /**
-     * save Double to shared preferences
+     * write all the changes of the batch with a single editor flush, in the background
      *
-     * @param key   - key for the value
-     * @param value - the value to save
+     * @param batch - puts the changes on the given editor
      */
-    public void putDouble(String key, double value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putLong(key, Double.doubleToRawLongBits(value));
+    public void batch(PrefyBatch batch) {
+        PrefyEditor editor = edit();
+        batch.edit(editor);
         editor.apply();
     }
 
     /**
-     * save Double to shared preferences
+     * write all the changes of the batch with a single editor flush
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return Returns true if the new values were successfully written to persistent storage.
+     * @param batch - puts the changes on the given editor
+     * @return saved_successfully if all the changes were written to persistent storage, else not_saved
      */
-    public boolean putDoubleSync(String key, double value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putLong(key, Double.doubleToRawLongBits(value));
+    public PrefyMsg batchSync(PrefyBatch batch) {
+        PrefyEditor editor = edit();
+        batch.edit(editor);
         return editor.commit();
     }
 
     /**
-     * get the saved Double from shared preferences
+     * keep the int, long, float, double and boolean values in primitive arrays, so getInt, getLong,
+     * getFloat, getDouble and getBoolean read them without boxing and without allocating.
+     * Loads all the values of the store once - for an encrypted store it decrypts all of them.
+     */
+    public synchronized void enablePrimitiveSnapshot() {
+        if (snapshot != null)
+            return;
+        PrefyPrimitiveSnapshot snapshot = new PrefyPrimitiveSnapshot();
+        PrefyStore store = store();
+        store.registerListener(snapshot.invalidator);
+        // published first, so writes that come while the values are read update it
+        this.snapshot = snapshot;
+        long generation = snapshot.generation();
+        snapshot.fill(store.getAll(), generation);
+    }
+
+    /**
+     * stop keeping the primitive values in memory
+     */
+    public synchronized void disablePrimitiveSnapshot() {
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot == null)
+            return;
+        this.snapshot = null;
+        store().unregisterListener(snapshot.invalidator);
+    }
+
+    /**
+     * keep the decoded values of getObject, getArray, getArrayList and getHashMap in memory,
+     * so reading the same key again will not parse the json again.
+     * The returned objects are shared between the calls - do not change them.
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param maxEntries - max number of cached values
      */
-    public double getDouble(String key, double defValue) {
-        return Double.longBitsToDouble(sharedPreferences.getLong(key, Double.doubleToRawLongBits(defValue)));
+    public void enableObjectCache(int maxEntries) {
+        setObjectCache(new PrefyObjectCache(maxEntries, false));
     }
 
     /**
-     * save Double to shared preferences if the key is not already exist
+     * same as enableObjectCache(int) but the size of the cache is limited by the estimated size
+     * of the cached values (2 bytes per char of the saved json)
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return true if the value added, false if the key already exist
+     * @param maxBytes - max estimated bytes of all the cached values
      */
-    public boolean putDoubleIfKeyNotExist(String key, double value) {
-        if (isKeyExist(key)) {
-            putDouble(key, value);
-            return true;
-        }
-        return false;
+    public void enableObjectCacheBySize(long maxBytes) {
+        setObjectCache(new PrefyObjectCache(maxBytes, true));
     }
 
     /**
-     * save Double to shared preferences if the key is not already exist
+     * stop caching decoded values and drop the cache
+     */
+    public void disableObjectCache() {
+        setObjectCache(null);
+    }
+
+    /**
+     * @return the counters of the object cache, or null if the cache is not enabled
+     */
+    public PrefyCacheStats getObjectCacheStats() {
+        PrefyObjectCache cache = objectCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * report the time of every get and put call, the length of the saved values, the calls on the
+     * main thread and the lookups of the object cache. Without metrics the calls are not timed.
      *
-     * @param key   - key for the value
-     * @param value - the value to save
-     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     * @param metrics - for example a PrefyMetricsRecorder, null to stop reporting
      */
-    public PrefyMsg putDoubleSyncIfKeyNotExist(String key, double value) {
-        if (isKeyExist(key)) {
-            return putDoubleSync(key, value) ? saved_successfully : not_saved;
+    public void setMetrics(PrefyMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param policy - what to do with sync writes on the main thread, default ALLOW
+     */
+    public void setMainThreadPolicy(PrefyMainThreadPolicy policy) {
+        setMainThreadPolicy(policy, null);
+    }
+
+    /**
+     * @param policy   - what to do with sync writes on the main thread, default ALLOW
+     * @param listener - gets the key and the stack of the sync writes on the main thread, and the
+     *                 offloaded writes that failed, may be null - then the stacks are printed
+     */
+    public void setMainThreadPolicy(PrefyMainThreadPolicy policy, PrefyMainThreadListener listener) {
+        if (policy == null)
+            throw new IllegalArgumentException("policy == null");
+        this.mainThreadListener = listener;
+        this.mainThreadPolicy = policy;
+    }
+
+    private synchronized void setObjectCache(PrefyObjectCache cache) {
+        if (objectCache == null && cache != null)
+            store().registerListener(cacheInvalidator);
+        else if (objectCache != null && cache == null)
+            store().unregisterListener(cacheInvalidator);
+        objectCache = cache;
+    }
+
+    /**
+     * drop the decrypted values that are kept in memory - the plaintext cache of an encrypted store
+     * and the object cache. The next reads decrypt the values again.
+     * Called when the app goes to the background if the plaintext cache is enabled.
+     */
+    public void lock() {
+        for (PrefyCachedStore store : cachedStores())
+            store.clear();
+        PrefyObjectCache cache = objectCache;
+        if (cache != null)
+            cache.invalidateAll();
+    }
+
+    /**
+     * @return the counters of the plaintext cache, or null if it is not enabled, see PrefyOptions.setPlaintextCache
+     */
+    public PrefyCacheStats getPlaintextCacheStats() {
+        ArrayList<PrefyCachedStore> stores = cachedStores();
+        if (stores.isEmpty())
+            return null;
+        if (stores.size() == 1)
+            return stores.get(0).stats();
+        // the caches of all the shards together
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long size = 0;
+        long maxSize = 0;
+        for (PrefyCachedStore store : stores) {
+            PrefyCacheStats stats = store.stats();
+            hits += stats.hitCount();
+            misses += stats.missCount();
+            evictions += stats.evictionCount();
+            size += stats.size();
+            maxSize += stats.maxSize();
         }
-        return key_already_exist;
+        return new PrefyCacheStats(hits, misses, evictions, size, maxSize);
     }
 
     /**
-     * get the saved Double and remove it from shared preferences
+     * @return the plaintext caches of the store, one per shard
+     */
+    private ArrayList<PrefyCachedStore> cachedStores() {
+        ArrayList<PrefyCachedStore> cached = new ArrayList<>();
+        PrefyStore store = this.store;
+        PrefyStore[] stores = store instanceof PrefyShardedStore ? ((PrefyShardedStore) store).shards() : new PrefyStore[]{store};
+        for (PrefyStore shard : stores) {
+            if (shard instanceof PrefyCachedStore)
+                cached.add((PrefyCachedStore) shard);
+        }
+        return cached;
+    }
+
+    /**
+     * keep async writes (put, remove, apply) in memory and write them together - after no write came
+     * for quietMillis, or when the first pending write waited maxDelayMillis.
+     * Reads see the pending values. Sync writes are written right away, together with the pending ones.
+     * The pending writes are also written when the app goes to the background.
      *
-     * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist
-     * @return if the key exist his value will returned else devValue
+     * @param quietMillis    - write after no write came for this time
+     * @param maxDelayMillis - max time a write can wait
      */
-    public double getDoubleAndRemoveKey(String key, double defValue) {
-        double res = getDouble(key, defValue);
-        remove(key);
-        return res;
+    public synchronized void enableWriteCoalescing(long quietMillis, long maxDelayMillis) {
+        PrefyCoalescer old = coalescer;
+        coalescer = new PrefyCoalescer(this, quietMillis, maxDelayMillis, writeScheduler());
+        if (old == null)
+            appContext.registerComponentCallbacks(flushOnStop);
+        else
+            flush(old);
     }
 
     /**
-     * save String set to shared preferences
+     * write the pending writes and stop coalescing
+     */
+    public synchronized void disableWriteCoalescing() {
+        PrefyCoalescer old = coalescer;
+        if (old == null)
+            return;
+        coalescer = null;
+        appContext.unregisterComponentCallbacks(flushOnStop);
+        flush(old);
+    }
+
+    /**
+     * write the pending writes of write coalescing now
+     */
+    public void flush() {
+        PrefyCoalescer coalescer = this.coalescer;
+        if (coalescer != null)
+            flush(coalescer);
+    }
+
+    /**
+     * @return the counters of write coalescing, or null if it is not enabled
+     */
+    public PrefyWriteStats getWriteStats() {
+        PrefyCoalescer coalescer = this.coalescer;
+        return coalescer == null ? null : coalescer.stats();
+    }
+
+    void flush(PrefyCoalescer coalescer) {
+        synchronized (coalescer) {
+            Map<String, Object> written = coalescer.snapshot();
+            if (written.isEmpty())
+                return;
+            writeNow(written, false);
+            coalescer.written(written);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService backgroundScheduler() {
+        if (backgroundScheduler == null) {
+            backgroundScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Prefy-background");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return backgroundScheduler;
+    }
+
+    private static synchronized ExecutorService ioExecutor() {
+        if (ioExecutor == null) {
+            ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Prefy-io");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return ioExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService writeScheduler() {
+        if (writeScheduler == null) {
+            writeScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Prefy-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return writeScheduler;
+    }
+
+    /**
+     * save String to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      */
-    public void putStringSet(String key, Set<String> value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putStringSet(key, value);
-        editor.apply();
+    public void putString(String key, String value) {
+        edit().putString(key, value).apply();
     }
 
     /**
-     * save String set to shared preferences
+     * save String to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return Returns true if the new values were successfully written to persistent storage.
      */
-    public boolean putStringSetSync(String key, Set<String> value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putStringSet(key, value);
-        return editor.commit();
+    public boolean putStringSync(String key, String value) {
+        return edit().putString(key, value).commit() == saved_successfully;
     }
 
     /**
-     * get the saved String set from shared preferences
+     * get the saved String from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public Set<String> getStringSet(String key, Set<String> defValue) {
-        return sharedPreferences.getStringSet(key, defValue);
+    public String getString(String key, String defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return stringValue(key, defValue);
+        long start = System.nanoTime();
+        String value = stringValue(key, defValue);
+        record(metrics, "getString", key, start, value == null ? 0 : value.length());
+        return value;
+    }
+
+    private String stringValue(String key, String defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (String) pending;
+        PrefyStore store = readStore();
+        if (store == null)
+            return defValue;
+        return store.getString(key, defValue);
     }
 
+
     /**
-     * save StringSet to shared preferences if the key is not already exist
+     * save String to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return true if the value added, false if the key already exist
      */
-    public boolean putStringSetIfKeyNotExist(String key, Set<String> value) {
+    public boolean putStringIfKeyNotExist(String key, String value) {
         if (isKeyExist(key)) {
-            putStringSet(key, value);
+            putString(key, value);
             return true;
         }
         return false;
     }
 
     /**
-     * save StringSet to shared preferences if the key is not already exist
+     * save String to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
      */
-    public PrefyMsg putStringSetSyncIfKeyNotExist(String key, Set<String> value) {
+    public PrefyMsg putStringSyncIfKeyNotExist(String key, String value) {
         if (isKeyExist(key)) {
-            return putStringSetSync(key, value) ? saved_successfully : not_saved;
+            return putStringSync(key, value) ? saved_successfully : not_saved;
         }
         return key_already_exist;
     }
 
     /**
-     * get the saved StringSet and remove it from shared preferences
+     * get the saved String and remove it from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public Set<String> getStringSetAndRemoveKey(String key, Set<String> defValue) {
-        Set<String> res = getStringSet(key, defValue);
+    public String getStringAndRemoveKey(String key, String defValue) {
+        String res = getString(key, defValue);
         remove(key);
         return res;
     }
 
+
     /**
-     * save any object to shared preferences
+     * save boolean to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      */
-    public <T> void putObject(String key, T value) {
-        String json = gson.toJson(value);
-        putString(key, json);
+    public void putBoolean(String key, boolean value) {
+        edit().putBoolean(key, value).apply();
     }
 
     /**
-     * save any object to shared preferences
+     * save boolean to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return Returns true if the new values were successfully written to persistent storage.
      */
-    public <T> boolean putObjectSync(String key, T value) {
-        String json = gson.toJson(value);
-        return putStringSync(key, json);
+    public boolean putBooleanSync(String key, boolean value) {
+        return edit().putBoolean(key, value).commit() == saved_successfully;
     }
 
     /**
-     * get the saved object from shared preferences
+     * get the saved boolean from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
-     * @param type     the type of the excepted object - for example MyObject.class
      * @return if the key exist his value will returned else devValue
      */
-    public <T> T getObject(String key, T defValue, Class<T> type) {
-        String json = getString(key, "");
-        if (json.isEmpty())
+    public boolean getBoolean(String key, boolean defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return booleanValue(key, defValue);
+        long start = System.nanoTime();
+        boolean value = booleanValue(key, defValue);
+        record(metrics, "getBoolean", key, start, 0);
+        return value;
+    }
+
+    private boolean booleanValue(String key, boolean defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (Boolean) pending;
+        PrefyStore store = readStore();
+        if (store == null)
             return defValue;
-        return gson.fromJson(json, type);
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot != null)
+            return snapshot.getBoolean(key, defValue, store);
+        return store.getBoolean(key, defValue);
     }
 
+
     /**
-     * save Object to shared preferences if the key is not already exist
+     * save Boolean to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return true if the value added, false if the key already exist
      */
-    public <T> boolean putObjectIfKeyNotExist(String key, T value) {
+    public boolean putBooleanIfKeyNotExist(String key, boolean value) {
         if (isKeyExist(key)) {
-            putObject(key, value);
+            putBoolean(key, value);
             return true;
         }
         return false;
     }
 
     /**
-     * save Object to shared preferences if the key is not already exist
+     * save Boolean to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
      */
-    public <T> PrefyMsg putObjectSyncIfKeyNotExist(String key, T value) {
+    public PrefyMsg putBooleanSyncIfKeyNotExist(String key, boolean value) {
         if (isKeyExist(key)) {
-            return putObjectSync(key, value) ? saved_successfully : not_saved;
+            return putBooleanSync(key, value) ? saved_successfully : not_saved;
         }
         return key_already_exist;
     }
 
     /**
-     * get the saved Object and remove it from shared preferences
+     * get the saved Boolean and remove it from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <T> T getObjectAndRemoveKey(String key, T defValue, Class<T> type) {
-        T res = getObject(key, defValue, type);
+    public boolean getBooleanAndRemoveKey(String key, boolean defValue) {
+        boolean res = getBoolean(key, defValue);
         remove(key);
         return res;
     }
 
     /**
-     * save any type of array to shared preferences
+     * save int to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      */
-    public <T> void putArray(String key, T[] value) {
-        String json = gson.toJson((T[]) value);
-        putString(key, json);
+    public void putInt(String key, int value) {
+        edit().putInt(key, value).apply();
     }
 
     /**
-     * save any type of array to shared preferences
+     * save int to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return Returns true if the new values were successfully written to persistent storage.
      */
-    public <T> boolean putArraySync(String key, T[] value) {
-        String json = gson.toJson((T[]) value);
-        return putStringSync(key, json);
+    public boolean putIntSync(String key, int value) {
+        return edit().putInt(key, value).commit() == saved_successfully;
     }
 
     /**
-     * get the saved object from shared preferences
+     * get the saved int from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
-     * @param type     the type of the excepted array - you can use getTypeToken in order to get this type
      * @return if the key exist his value will returned else devValue
      */
-    public <T> T[] getArray(String key, T[] defValue, Type type) {
-        String json = getString(key, "");
-        if (json.isEmpty())
+    public int getInt(String key, int defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return intValue(key, defValue);
+        long start = System.nanoTime();
+        int value = intValue(key, defValue);
+        record(metrics, "getInt", key, start, 0);
+        return value;
+    }
+
+    private int intValue(String key, int defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (Integer) pending;
+        PrefyStore store = readStore();
+        if (store == null)
             return defValue;
-
-        return gson.fromJson(json, type);
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot != null)
+            return snapshot.getInt(key, defValue, store);
+        return store.getInt(key, defValue);
     }
 
+
     /**
-     * save Array to shared preferences if the key is not already exist
+     * save Int to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return true if the value added, false if the key already exist
      */
-    public <T> boolean putArrayIfKeyNotExist(String key, T[] value) {
+    public boolean putIntIfKeyNotExist(String key, int value) {
         if (isKeyExist(key)) {
-            putArray(key, value);
+            putInt(key, value);
             return true;
         }
         return false;
     }
 
     /**
-     * save Array to shared preferences if the key is not already exist
+     * save Int to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
      */
-    public <T> PrefyMsg putArraySyncIfKeyNotExist(String key, T[] value) {
+    public PrefyMsg putIntSyncIfKeyNotExist(String key, int value) {
         if (isKeyExist(key)) {
-            return putArraySync(key, value) ? saved_successfully : not_saved;
+            return putIntSync(key, value) ? saved_successfully : not_saved;
         }
         return key_already_exist;
     }
 
     /**
-     * get the saved Array and remove it from shared preferences
+     * get the saved Int and remove it from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <T> T[] getArrayAndRemoveKey(String key, T[] defValue, Type type) {
-        T[] res = getArray(key, defValue, type);
+    public int getIntAndRemoveKey(String key, int defValue) {
+        int res = getInt(key, defValue);
         remove(key);
         return res;
     }
 
     /**
-     * save any type of ArrayList to shared preferences
+     * save float to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      */
-    public <T> void putArrayList(String key, ArrayList<T> value) {
-        String json = gson.toJson((T[]) value.toArray());
-        Log.d("pttt", "putObjectArrayList: " + json);
-        putString(key, json);
+    public void putFloat(String key, float value) {
+        edit().putFloat(key, value).apply();
     }
 
     /**
-     * save any type of ArrayList to shared preferences
+     * save float to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return Returns true if the new values were successfully written to persistent storage.
      */
-    public <T> boolean putArrayListSync(String key, ArrayList<T> value) {
-        String json = gson.toJson((T[]) value.toArray());
-        return putStringSync(key, json);
+    public boolean putFloatSync(String key, float value) {
+        return edit().putFloat(key, value).commit() == saved_successfully;
     }
 
     /**
-     * get the saved object from shared preferences
+     * get the saved float from shared preferences
      *
      * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist - same generic type as excepted ArrayList
+     * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <T> ArrayList<T> getArrayList(String key, ArrayList<T> defValue) {
-        String json = getString(key, "");
-        if (json.isEmpty())
+    public float getFloat(String key, float defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return floatValue(key, defValue);
+        long start = System.nanoTime();
+        float value = floatValue(key, defValue);
+        record(metrics, "getFloat", key, start, 0);
+        return value;
+    }
+
+    private float floatValue(String key, float defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (Float) pending;
+        PrefyStore store = readStore();
+        if (store == null)
             return defValue;
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot != null)
+            return snapshot.getFloat(key, defValue, store);
+        return store.getFloat(key, defValue);
+    }
 
-        Type type = new TypeToken<T[]>() {
-        }.getType();
+    /**
+     * save Float to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
+     */
+    public boolean putFloatIfKeyNotExist(String key, float value) {
+        if (isKeyExist(key)) {
+            putFloat(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * save Float to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public PrefyMsg putFloatSyncIfKeyNotExist(String key, float value) {
+        if (isKeyExist(key)) {
+            return putFloatSync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
+    }
 
-        return new ArrayList<T>(Arrays.asList(gson.fromJson(json, type)));
+    /**
+     * get the saved Float and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public float getFloatAndRemoveKey(String key, float defValue) {
+        float res = getFloat(key, defValue);
+        remove(key);
+        return res;
     }
 
+    /**
+     * save long to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     */
+    public void putLong(String key, long value) {
+        edit().putLong(key, value).apply();
+    }
 
     /**
-     * save ArrayList to shared preferences if the key is not already exist
+     * save long to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public boolean putLongSync(String key, long value) {
+        return edit().putLong(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved long from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public long getLong(String key, long defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return longValue(key, defValue);
+        long start = System.nanoTime();
+        long value = longValue(key, defValue);
+        record(metrics, "getLong", key, start, 0);
+        return value;
+    }
+
+    private long longValue(String key, long defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (Long) pending;
+        PrefyStore store = readStore();
+        if (store == null)
+            return defValue;
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot != null)
+            return snapshot.getLong(key, defValue, store);
+        return store.getLong(key, defValue);
+    }
+
+    /**
+     * save Long to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return true if the value added, false if the key already exist
      */
-    public <T> boolean putArrayListIfKeyNotExist(String key, ArrayList<T> value) {
+    public boolean putLongIfKeyNotExist(String key, long value) {
         if (isKeyExist(key)) {
-            putArrayList(key, value);
+            putLong(key, value);
             return true;
         }
         return false;
     }
 
     /**
-     * save ArrayList to shared preferences if the key is not already exist
+     * save Long to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
      */
-    public <T> PrefyMsg putArrayListSyncIfKeyNotExist(String key, ArrayList<T> value) {
+    public PrefyMsg putLongSyncIfKeyNotExist(String key, long value) {
         if (isKeyExist(key)) {
-            return putArrayListSync(key, value) ? saved_successfully : not_saved;
+            return putLongSync(key, value) ? saved_successfully : not_saved;
         }
         return key_already_exist;
     }
 
     /**
-     * get the saved ArrayList and remove it from shared preferences
+     * get the saved Long and remove it from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <T> ArrayList<T> getArrayListAndRemoveKey(String key, ArrayList<T> defValue) {
-        ArrayList<T> res = getArrayList(key, defValue);
+    public long getLongAndRemoveKey(String key, long defValue) {
+        long res = getLong(key, defValue);
         remove(key);
         return res;
     }
 
     /**
-     * save any type of HasMap to shared preferences
+     * save Double to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      */
-    public <E, T> void putHashMap(String key, HashMap<E, T> value) {
-        String json = gson.toJson(value);
-        putString(key, json);
+    public void putDouble(String key, double value) {
+        edit().putDouble(key, value).apply();
     }
 
     /**
-     * save HasMap to shared preferences
+     * save Double to shared preferences
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return Returns true if the new values were successfully written to persistent storage.
      */
-    public <E, T> boolean putHashMapSync(String key, HashMap<E, T> value) {
-        String json = gson.toJson(value);
-        return putStringSync(key, json);
+    public boolean putDoubleSync(String key, double value) {
+        return edit().putDouble(key, value).commit() == saved_successfully;
     }
 
     /**
-     * get the saved object from shared preferences
+     * get the saved Double from shared preferences
      *
      * @param key      - key for the requested value
-     * @param defValue - default in case the key not exist - same generic type as excepted HashMap
+     * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <E, T> HashMap<E, T> getHashMap(String key, HashMap<E, T> defValue) {
-        String json = getString(key, "");
-        if (json.isEmpty())
+    public double getDouble(String key, double defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return doubleValue(key, defValue);
+        long start = System.nanoTime();
+        double value = doubleValue(key, defValue);
+        record(metrics, "getDouble", key, start, 0);
+        return value;
+    }
+
+    private double doubleValue(String key, double defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : Double.longBitsToDouble((Long) pending);
+        PrefyStore store = readStore();
+        if (store == null)
             return defValue;
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        if (snapshot != null)
+            return Double.longBitsToDouble(snapshot.getLong(key, Double.doubleToRawLongBits(defValue), store));
+        return Double.longBitsToDouble(store.getLong(key, Double.doubleToRawLongBits(defValue)));
+    }
+
+    /**
+     * save Double to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
+     */
+    public boolean putDoubleIfKeyNotExist(String key, double value) {
+        if (isKeyExist(key)) {
+            putDouble(key, value);
+            return true;
+        }
+        return false;
+    }
 
-        Type typeOfHashMap = new TypeToken<HashMap<E, T>>() {
-        }.getType();
-        return gson.fromJson(json, typeOfHashMap);
+    /**
+     * save Double to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public PrefyMsg putDoubleSyncIfKeyNotExist(String key, double value) {
+        if (isKeyExist(key)) {
+            return putDoubleSync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
     }
 
+    /**
+     * get the saved Double and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public double getDoubleAndRemoveKey(String key, double defValue) {
+        double res = getDouble(key, defValue);
+        remove(key);
+        return res;
+    }
 
     /**
-     * save HashMap to shared preferences if the key is not already exist
+     * save String set to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     */
+    public void putStringSet(String key, Set<String> value) {
+        edit().putStringSet(key, value).apply();
+    }
+
+    /**
+     * save String set to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public boolean putStringSetSync(String key, Set<String> value) {
+        return edit().putStringSet(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved String set from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        PrefyMetrics metrics = this.metrics;
+        if (metrics == null)
+            return stringSetValue(key, defValue);
+        long start = System.nanoTime();
+        Set<String> value = stringSetValue(key, defValue);
+        record(metrics, "getStringSet", key, start, 0);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> stringSetValue(String key, Set<String> defValue) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending == PrefyEditor.REMOVE ? defValue : (Set<String>) pending;
+        PrefyStore store = readStore();
+        if (store == null)
+            return defValue;
+        return store.getStringSet(key, defValue);
+    }
+
+    /**
+     * save StringSet to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return true if the value added, false if the key already exist
      */
-    public <E, T> boolean putHashMapIfKeyNotExist(String key, HashMap<E, T> value) {
+    public boolean putStringSetIfKeyNotExist(String key, Set<String> value) {
         if (isKeyExist(key)) {
-            putHashMap(key, value);
+            putStringSet(key, value);
             return true;
         }
         return false;
     }
 
     /**
-     * save HashMap to shared preferences if the key is not already exist
+     * save StringSet to shared preferences if the key is not already exist
      *
      * @param key   - key for the value
      * @param value - the value to save
      * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
      */
-    public <E, T> PrefyMsg putHashMapSyncIfKeyNotExist(String key, HashMap<E, T> value) {
+    public PrefyMsg putStringSetSyncIfKeyNotExist(String key, Set<String> value) {
         if (isKeyExist(key)) {
-            return putHashMapSync(key, value) ? saved_successfully : not_saved;
+            return putStringSetSync(key, value) ? saved_successfully : not_saved;
         }
         return key_already_exist;
     }
 
     /**
-     * get the saved HashMap and remove it from shared preferences
+     * get the saved StringSet and remove it from shared preferences
      *
      * @param key      - key for the requested value
      * @param defValue - default in case the key not exist
      * @return if the key exist his value will returned else devValue
      */
-    public <E, T> HashMap<E, T> getHashMapAndRemoveKey(String key, HashMap<E, T> defValue) {
-        HashMap<E, T> res = getHashMap(key, defValue);
+    public Set<String> getStringSetAndRemoveKey(String key, Set<String> defValue) {
+        Set<String> res = getStringSet(key, defValue);
         remove(key);
         return res;
     }
 
     /**
-     * remove key from shared preferences
+     * save any object to shared preferences
      *
-     * @param key - the key that should remove
+     * @param key   - key for the value
+     * @param value - the value to save
      */
-    public void remove(String key) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.remove(key);
-        editor.apply();
+    public <T> void putObject(String key, T value) {
+        edit().putObject(key, value).apply();
     }
 
     /**
-     * check if key exist in sharedPreferences
+     * save any object to shared preferences
      *
-     * @param key - key to check
-     * @return - true if exist false if not
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <T> boolean putObjectSync(String key, T value) {
+        return edit().putObject(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved object from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @param type     the type of the excepted object - for example MyObject.class
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T getObject(String key, T defValue, Class<T> type) {
+        return readObject("getObject", key, defValue, type);
+    }
+
+    /**
+     * save Object to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
      */
-    private boolean isKeyExist(String key) {
-        return sharedPreferences.contains(key);
+    public <T> boolean putObjectIfKeyNotExist(String key, T value) {
+        if (isKeyExist(key)) {
+            putObject(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * save Object to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public <T> PrefyMsg putObjectSyncIfKeyNotExist(String key, T value) {
+        if (isKeyExist(key)) {
+            return putObjectSync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
+    }
+
+    /**
+     * get the saved Object and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T getObjectAndRemoveKey(String key, T defValue, Class<T> type) {
+        T res = getObject(key, defValue, type);
+        remove(key);
+        return res;
+    }
+
+    /**
+     * save any type of array to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     */
+    public <T> void putArray(String key, T[] value) {
+        edit().putArray(key, value).apply();
+    }
+
+    /**
+     * save any type of array to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <T> boolean putArraySync(String key, T[] value) {
+        return edit().putArray(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved object from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @param type     the type of the excepted array - you can use getTypeToken in order to get this type
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T[] getArray(String key, T[] defValue, Type type) {
+        return readObject("getArray", key, defValue, type);
+    }
+
+    /**
+     * save Array to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
+     */
+    public <T> boolean putArrayIfKeyNotExist(String key, T[] value) {
+        if (isKeyExist(key)) {
+            putArray(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * save Array to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public <T> PrefyMsg putArraySyncIfKeyNotExist(String key, T[] value) {
+        if (isKeyExist(key)) {
+            return putArraySync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
+    }
+
+    /**
+     * get the saved Array and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T[] getArrayAndRemoveKey(String key, T[] defValue, Type type) {
+        T[] res = getArray(key, defValue, type);
+        remove(key);
+        return res;
+    }
+
+    /**
+     * save any type of ArrayList to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     */
+    public <T> void putArrayList(String key, ArrayList<T> value) {
+        edit().putArrayList(key, value).apply();
+    }
+
+    /**
+     * save any type of ArrayList to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <T> boolean putArrayListSync(String key, ArrayList<T> value) {
+        return edit().putArrayList(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved object from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist - same generic type as excepted ArrayList
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> ArrayList<T> getArrayList(String key, ArrayList<T> defValue) {
+        T[] array = readObject("getArrayList", key, null, ERASED_ARRAY_TYPE);
+        if (array == null)
+            return defValue;
+
+        return new ArrayList<T>(Arrays.asList(array));
+    }
+
+    /**
+     * get the saved ArrayList from shared preferences, with the elements decoded to the given type
+     *
+     * @param key         - key for the requested value
+     * @param defValue    - default in case the key not exist
+     * @param elementType - the type of the list elements - for example MyObject.class
+     * @return if the key exist a new list with his value will returned else devValue
+     */
+    public <T> ArrayList<T> getList(String key, ArrayList<T> defValue, Class<T> elementType) {
+        return getList(key, defValue, (Type) elementType);
+    }
+
+    /**
+     * get the saved ArrayList from shared preferences, with the elements decoded to the given type
+     *
+     * @param key         - key for the requested value
+     * @param defValue    - default in case the key not exist
+     * @param elementType - the type of the list elements - you can use getTypeToken in order to get this type
+     * @return if the key exist a new list with his value will returned else devValue
+     */
+    public <T> ArrayList<T> getList(String key, ArrayList<T> defValue, Type elementType) {
+        ArrayList<T> list = readObject("getList", key, null, listType(elementType));
+        if (list == null)
+            return defValue;
+        return new ArrayList<T>(list);
+    }
+
+
+    /**
+     * save ArrayList to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
+     */
+    public <T> boolean putArrayListIfKeyNotExist(String key, ArrayList<T> value) {
+        if (isKeyExist(key)) {
+            putArrayList(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * save ArrayList to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public <T> PrefyMsg putArrayListSyncIfKeyNotExist(String key, ArrayList<T> value) {
+        if (isKeyExist(key)) {
+            return putArrayListSync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
+    }
+
+    /**
+     * get the saved ArrayList and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> ArrayList<T> getArrayListAndRemoveKey(String key, ArrayList<T> defValue) {
+        ArrayList<T> res = getArrayList(key, defValue);
+        remove(key);
+        return res;
+    }
+
+    /**
+     * save any type of HasMap to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     */
+    public <E, T> void putHashMap(String key, HashMap<E, T> value) {
+        edit().putHashMap(key, value).apply();
+    }
+
+    /**
+     * save HasMap to shared preferences
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <E, T> boolean putHashMapSync(String key, HashMap<E, T> value) {
+        return edit().putHashMap(key, value).commit() == saved_successfully;
+    }
+
+    /**
+     * get the saved object from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist - same generic type as excepted HashMap
+     * @return if the key exist his value will returned else devValue
+     */
+    public <E, T> HashMap<E, T> getHashMap(String key, HashMap<E, T> defValue) {
+        return readObject("getHashMap", key, defValue, ERASED_HASH_MAP_TYPE);
+    }
+
+    /**
+     * get the saved HashMap from shared preferences, with the keys and values decoded to the given types
+     *
+     * @param key       - key for the requested value
+     * @param defValue  - default in case the key not exist
+     * @param keyType   - the type of the map keys - for example String.class
+     * @param valueType - the type of the map values - for example MyObject.class
+     * @return if the key exist a new map with his value will returned else devValue
+     */
+    public <K, V> HashMap<K, V> getMap(String key, HashMap<K, V> defValue, Class<K> keyType, Class<V> valueType) {
+        return getMap(key, defValue, (Type) keyType, (Type) valueType);
+    }
+
+    /**
+     * get the saved HashMap from shared preferences, with the keys and values decoded to the given types
+     *
+     * @param key       - key for the requested value
+     * @param defValue  - default in case the key not exist
+     * @param keyType   - the type of the map keys - you can use getTypeToken in order to get this type
+     * @param valueType - the type of the map values - you can use getTypeToken in order to get this type
+     * @return if the key exist a new map with his value will returned else devValue
+     */
+    public <K, V> HashMap<K, V> getMap(String key, HashMap<K, V> defValue, Type keyType, Type valueType) {
+        HashMap<K, V> map = readObject("getMap", key, null, mapType(keyType, valueType));
+        if (map == null)
+            return defValue;
+        return new HashMap<K, V>(map);
+    }
+
+
+    /**
+     * save HashMap to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return true if the value added, false if the key already exist
+     */
+    public <E, T> boolean putHashMapIfKeyNotExist(String key, HashMap<E, T> value) {
+        if (isKeyExist(key)) {
+            putHashMap(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * save HashMap to shared preferences if the key is not already exist
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return If the key already exist return key_already_exist else Returns saved_successfully if the new values were successfully written to persistent storage and not_saved if not.
+     */
+    public <E, T> PrefyMsg putHashMapSyncIfKeyNotExist(String key, HashMap<E, T> value) {
+        if (isKeyExist(key)) {
+            return putHashMapSync(key, value) ? saved_successfully : not_saved;
+        }
+        return key_already_exist;
+    }
+
+    /**
+     * get the saved HashMap and remove it from shared preferences
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public <E, T> HashMap<E, T> getHashMapAndRemoveKey(String key, HashMap<E, T> defValue) {
+        HashMap<E, T> res = getHashMap(key, defValue);
+        remove(key);
+        return res;
+    }
+
+    /**
+     * save a large list - the elements are streamed to a file of their own and shared preferences
+     * holds only a pointer to it. Read it back with getList, getArrayList, iterateList or forEachInList.
+     * This method writes the file and the pointer before it returns, do not call it on the main thread.
+     *
+     * @param key         - key for the value
+     * @param value       - the value to save
+     * @param elementType - the type of the list elements - for example MyObject.class
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <T> boolean putLargeList(String key, final Collection<T> value, Type elementType) {
+        final TypeAdapter<T> adapter = adapter(elementType);
+        return putLarge(key, new PrefySidecar.Content() {
+            @Override
+            public void writeTo(Writer out) throws IOException {
+                JsonWriter writer = new JsonWriter(out);
+                writer.beginArray();
+                for (T element : value)
+                    adapter.write(writer, element);
+                writer.endArray();
+                writer.flush();
+            }
+        });
+    }
+
+    /**
+     * save a large map - the entries are streamed to a file of their own and shared preferences
+     * holds only a pointer to it. Read it back with getMap or getHashMap.
+     * This method writes the file and the pointer before it returns, do not call it on the main thread.
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param keyType   - the type of the map keys - for example String.class
+     * @param valueType - the type of the map values - for example MyObject.class
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public <K, V> boolean putLargeMap(String key, final Map<K, V> value, Type keyType, Type valueType) {
+        final TypeAdapter<Map<K, V>> adapter = adapter(mapType(keyType, valueType));
+        return putLarge(key, new PrefySidecar.Content() {
+            @Override
+            public void writeTo(Writer out) throws IOException {
+                JsonWriter writer = new JsonWriter(out);
+                adapter.write(writer, value);
+                writer.flush();
+            }
+        });
+    }
+
+    /**
+     * read a saved list one element at a time, without loading all of it to memory
+     *
+     * @param key         - key for the requested value
+     * @param elementType - the type of the list elements - for example MyObject.class
+     * @return iterator over the saved list, empty if the key not exist. close it if you do not read it to the end
+     */
+    public <T> PrefyListIterator<T> iterateList(String key, Type elementType) {
+        TypeAdapter<T> adapter = adapter(elementType);
+        String json = getString(key, "");
+        if (deltas.has(key)) {
+            JsonElement list = decodeWithDeltas(key, json, null, this.<JsonElement>adapter(JsonElement.class));
+            return new PrefyListIterator<T>(list == null ? null : new StringReader(list.toString()), adapter);
+        }
+        if (json.isEmpty())
+            return new PrefyListIterator<T>(null, adapter);
+        return new PrefyListIterator<T>(openJson(json), adapter);
+    }
+
+    /**
+     * read a saved list one element at a time, without loading all of it to memory
+     *
+     * @param key         - key for the requested value
+     * @param elementType - the type of the list elements - for example MyObject.class
+     * @param callback    - called with every element of the list, by order
+     */
+    public <T> void forEachInList(String key, Type elementType, PrefyElementCallback<T> callback) {
+        PrefyListIterator<T> iterator = iterateList(key, elementType);
+        try {
+            while (iterator.hasNext())
+                callback.onElement(iterator.next());
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * add an element to the end of a saved list, without reading and writing all the list - only the
+     * change is saved, and the changes are merged into the list on a background thread once there are
+     * enough of them. getList, getArrayList, getObject and iterateList return the list with its changes.
+     *
+     * @param key     - key of the list, a key that not exist starts from an empty list
+     * @param element - the element to add
+     */
+    public <T> void appendToList(String key, T element) {
+        addDelta(key, deltas.appendRecord(toTree(element)));
+    }
+
+    /**
+     * remove the first element that equals to the given one from a saved list, without reading and
+     * writing all the list - see appendToList
+     *
+     * @param key     - key of the list
+     * @param element - the element to remove, compared by its json
+     */
+    public <T> void removeFromList(String key, T element) {
+        addDelta(key, deltas.removeRecord(toTree(element)));
+    }
+
+    /**
+     * put an entry in a saved map, without reading and writing all the map - only the change is saved,
+     * and the changes are merged into the map on a background thread once there are enough of them.
+     * getMap, getHashMap and getObject return the map with its changes.
+     *
+     * @param key    - key of the map, a key that not exist starts from an empty map
+     * @param mapKey - key of the entry, saved as its String value like Gson saves map keys
+     * @param value  - value of the entry
+     */
+    public <K, V> void putInMap(String key, K mapKey, V value) {
+        addDelta(key, deltas.putRecord(String.valueOf(mapKey), toTree(value)));
+    }
+
+    /**
+     * remove an entry from a saved map, without reading and writing all the map - see putInMap
+     *
+     * @param key    - key of the map
+     * @param mapKey - key of the entry to remove
+     */
+    public <K> void removeFromMap(String key, K mapKey) {
+        addDelta(key, deltas.deleteRecord(String.valueOf(mapKey)));
+    }
+
+    private JsonElement toTree(Object value) {
+        if (value == null)
+            return JsonNull.INSTANCE;
+        return this.<Object>adapter(value.getClass()).toJsonTree(value);
+    }
+
+    /**
+     * add delta to the saved int, as one atomic operation - no update is lost when many threads
+     * increment the same key
+     *
+     * @param key   - key of the counter, a key that not exist starts from 0
+     * @param delta - the value to add
+     * @return the new value
+     */
+    public int incrementInt(String key, int delta) {
+        synchronized (lockOf(key)) {
+            int value = getInt(key, 0) + delta;
+            putInt(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * add delta to the saved long, as one atomic operation - no update is lost when many threads
+     * increment the same key
+     *
+     * @param key   - key of the counter, a key that not exist starts from 0
+     * @param delta - the value to add
+     * @return the new value
+     */
+    public long incrementLong(String key, long delta) {
+        synchronized (lockOf(key)) {
+            long value = getLong(key, 0) + delta;
+            putLong(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * save the new value only if the saved value is the expected one, as one atomic operation
+     *
+     * @param key      - key for the value
+     * @param expected - the value that should be saved now
+     * @param newValue - the value to save
+     * @return true if the value saved, false if the saved value was not the expected or the key not exist
+     */
+    public boolean compareAndSet(String key, int expected, int newValue) {
+        synchronized (lockOf(key)) {
+            if (!isKeyExist(key) || getInt(key, expected) != expected)
+                return false;
+            putInt(key, newValue);
+            return true;
+        }
+    }
+
+    /**
+     * save the new value only if the saved value is the expected one, as one atomic operation
+     *
+     * @param key      - key for the value
+     * @param expected - the value that should be saved now
+     * @param newValue - the value to save
+     * @return true if the value saved, false if the saved value was not the expected or the key not exist
+     */
+    public boolean compareAndSet(String key, long expected, long newValue) {
+        synchronized (lockOf(key)) {
+            if (!isKeyExist(key) || getLong(key, expected) != expected)
+                return false;
+            putLong(key, newValue);
+            return true;
+        }
+    }
+
+    /**
+     * save the new value only if the saved value is the expected one, as one atomic operation
+     *
+     * @param key      - key for the value
+     * @param expected - the value that should be saved now
+     * @param newValue - the value to save
+     * @return true if the value saved, false if the saved value was not the expected or the key not exist
+     */
+    public boolean compareAndSet(String key, boolean expected, boolean newValue) {
+        synchronized (lockOf(key)) {
+            if (!isKeyExist(key) || getBoolean(key, expected) != expected)
+                return false;
+            putBoolean(key, newValue);
+            return true;
+        }
+    }
+
+    /**
+     * save the new value only if the saved value is the expected one, as one atomic operation
+     *
+     * @param key      - key for the value
+     * @param expected - the value that should be saved now, null if the key should not exist
+     * @param newValue - the value to save
+     * @return true if the value saved, false if the saved value was not the expected
+     */
+    public boolean compareAndSet(String key, String expected, String newValue) {
+        synchronized (lockOf(key)) {
+            String current = getString(key, null);
+            if (current == null ? expected != null : !current.equals(expected))
+                return false;
+            putString(key, newValue);
+            return true;
+        }
+    }
+
+    /**
+     * read the saved object, compute the new value and save it, as one atomic operation
+     *
+     * @param key     - key for the value
+     * @param type    - the type of the object - for example MyObject.class
+     * @param updater - computes the new value from the saved one (null if the key not exist)
+     * @return the new value
+     */
+    public <T> T update(String key, Class<T> type, PrefyUpdater<T> updater) {
+        synchronized (lockOf(key)) {
+            T value = updater.update(getObject(key, null, type));
+            putObject(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * remove key from shared preferences
+     *
+     * @param key - the key that should remove
+     */
+    public void remove(String key) {
+        edit().remove(key).apply();
+    }
+
+    /**
+     * save String that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putString(String key, String value, long ttlMillis) {
+        edit().putString(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save boolean that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putBoolean(String key, boolean value, long ttlMillis) {
+        edit().putBoolean(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save int that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putInt(String key, int value, long ttlMillis) {
+        edit().putInt(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save float that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putFloat(String key, float value, long ttlMillis) {
+        edit().putFloat(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save long that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putLong(String key, long value, long ttlMillis) {
+        edit().putLong(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save double that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putDouble(String key, double value, long ttlMillis) {
+        edit().putDouble(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save String Set that reads as not exist after the time to live, and is removed in the background
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public void putStringSet(String key, Set<String> value, long ttlMillis) {
+        edit().putStringSet(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * save any object that reads as not exist after the time to live, and is removed in the background -
+     * for example a cached server response
+     *
+     * @param key       - key for the value
+     * @param value     - the value to save
+     * @param ttlMillis - time to live from now
+     */
+    public <T> void putObject(String key, T value, long ttlMillis) {
+        edit().putObject(key, value).expireAfter(key, ttlMillis).apply();
+    }
+
+    /**
+     * remove the keys whose time to live passed now, with a single write. They are also removed
+     * in the background when they expire
+     *
+     * @return number of removed keys
+     */
+    public int removeExpired() {
+        return expiry.removeExpired();
+    }
+
+    /**
+     * check if key exist in sharedPreferences
+     *
+     * @param key - key to check
+     * @return - true if exist false if not
+     */
+    boolean isKeyExist(String key) {
+        Object pending = pending(key);
+        if (pending != null)
+            return pending != PrefyEditor.REMOVE;
+        PrefyStore store = readStore();
+        return store != null && store.contains(key);
+    }
+
+    void registerStoreListener(PrefyStoreListener listener) {
+        store().registerListener(listener);
+    }
+
+    void unregisterStoreListener(PrefyStoreListener listener) {
+        store().unregisterListener(listener);
+    }
+
+    /**
+     * @return the store, after waiting for it to be ready
+     */
+    private PrefyStore store() {
+        if (loaded.getCount() != 0)
+            return loadStore(Long.MAX_VALUE);
+        return store;
+    }
+
+    /**
+     * @return the store, or null if it is not ready within the read timeout
+     */
+    private PrefyStore readStore() {
+        if (loaded.getCount() != 0)
+            return loadStore(readTimeout);
+        return store;
+    }
+
+    /**
+     * wait for the store and for its file to be read, and count the time if this is the main thread
+     *
+     * @return the store, or null if it is not ready within the timeout
+     */
+    private PrefyStore loadStore(long timeoutMillis) {
+        boolean mainThread = Looper.myLooper() == Looper.getMainLooper();
+        long start = mainThread ? System.nanoTime() : 0;
+        try {
+            if (!isReady() && !awaitReady(timeoutMillis))
+                return null;
+            PrefyStore store = this.store;
+            if (loaded.getCount() != 0) {
+                // shared preferences reads its file on a thread of its own and the first read waits for it
+                Trace.beginSection("Prefy load");
+                try {
+                    store.contains(PrefyExpiry.KEY);
+                } finally {
+                    Trace.endSection();
+                }
+                loaded.countDown();
+            }
+            return store;
+        } finally {
+            if (mainThread)
+                mainThreadWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private Object lockOf(String key) {
+        return keyLocks[stripeOf(key)];
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (keyLocks.length - 1);
+    }
+
+    /**
+     * @return the value that waits for the coalescing flush, PrefyEditor.REMOVE for a removed or expired key, or null
+     */
+    private Object pending(String key) {
+        if (expiry.isExpired(key))
+            return PrefyEditor.REMOVE;
+        PrefyCoalescer coalescer = this.coalescer;
+        return coalescer == null ? null : coalescer.get(key);
+    }
+
+    /**
+     * write the changes of an editor, or keep them for the next flush if write coalescing is enabled
+     *
+     * @param changes - key to new value, PrefyEditor.REMOVE for removed keys
+     * @param sync    - true to commit, false to apply
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    boolean write(Map<String, Object> changes, boolean sync) {
+        return write(changes, null, sync);
+    }
+
+    /**
+     * write the changes of an editor together with the expiry times of its keys
+     *
+     * @param changes - key to new value, PrefyEditor.REMOVE for removed keys
+     * @param ttls    - key to time to live in millis, may be null
+     * @param sync    - true to commit, false to apply
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    boolean write(final Map<String, Object> changes, final Map<String, Long> ttls, final boolean sync) {
+        while (true) {
+            boolean withDeltas = deltas.affects(changes);
+            if (!withDeltas && !expiry.affects(changes, ttls))
+                return writeValues(changes, sync);
+            if (withDeltas) {
+                // the list and map changes of a key are added, folded and read under the lock of the key
+                return withKeyLocks(changes.keySet(), new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return writeWithHiddenKeys(changes, ttls, sync);
+                    }
+                });
+            }
+            // the keys with list and map changes only change under this lock
+            synchronized (expiry) {
+                if (!deltas.affects(changes))
+                    return writeValues(expiry.apply(deltas.apply(changes), ttls), sync);
+            }
+            // a key got list and map changes meanwhile, so the write needs the lock of the key
+        }
+    }
+
+    /**
+     * the expiry times and the keys with list and map changes are saved in one key each, so writes
+     * that change them go one at a time
+     */
+    private boolean writeWithHiddenKeys(Map<String, Object> changes, Map<String, Long> ttls, boolean sync) {
+        synchronized (expiry) {
+            return writeValues(expiry.apply(deltas.apply(changes), ttls), sync);
+        }
+    }
+
+    /**
+     * run the task holding the locks of the keys - they are taken by their order, so two callers never
+     * wait for each other. The list and map changes of a key are its own, so they use the lock of the key.
+     */
+    <T> T withKeyLocks(Collection<String> keys, Callable<T> task) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String key : keys)
+            stripes.add(stripeOf(key.startsWith(PrefyDeltas.PREFIX) ? key.substring(PrefyDeltas.PREFIX.length()) : key));
+        return withStripes(stripes.iterator(), task);
+    }
+
+    private <T> T withStripes(Iterator<Integer> stripes, Callable<T> task) {
+        if (stripes.hasNext()) {
+            synchronized (keyLocks[stripes.next()]) {
+                return withStripes(stripes, task);
+            }
+        }
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * check a sync write against the main thread policy, and report it if needed
+     *
+     * @param key - key of the write
+     * @return true if the write should be offloaded from this thread
+     */
+    boolean offloadsSyncWrite(String key) {
+        PrefyMainThreadPolicy policy = mainThreadPolicy;
+        if (policy == PrefyMainThreadPolicy.ALLOW || Looper.myLooper() != Looper.getMainLooper())
+            return false;
+        PrefyMainThreadListener listener = mainThreadListener;
+        Throwable stack = new Throwable("Prefy sync write of " + key + " on the main thread");
+        if (listener != null)
+            listener.onSyncWrite(key, stack);
+        else if (policy == PrefyMainThreadPolicy.REPORT)
+            stack.printStackTrace();
+        return policy == PrefyMainThreadPolicy.OFFLOAD;
+    }
+
+    /**
+     * wait on the writer thread until all the writes so far, including the coalesced ones, are on the disk
+     *
+     * @param offloadedKey - key of a sync write that was offloaded from the main thread, its failure is
+     *                     reported to the main thread listener - null if the caller gets the result
+     * @return saved_successfully if they were written to persistent storage, else not_saved
+     */
+    Future<PrefyMsg> syncInBackground(final String offloadedKey) {
+        FutureTask<PrefyMsg> task = new FutureTask<>(new Callable<PrefyMsg>() {
+            @Override
+            public PrefyMsg call() {
+                Throwable error;
+                try {
+                    flush();
+                    // an empty sync write returns after the writes before it, the files of large values too
+                    boolean saved = store().write(new HashMap<String, Object>(), true);
+                    error = sidecar.takeFailure();
+                    if (saved && error == null)
+                        return saved_successfully;
+                    if (error == null)
+                        error = new IOException("the store did not save the write");
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (offloadedKey != null)
+                    offloadedWriteFailed(offloadedKey, error);
+                return not_saved;
+            }
+        });
+        writeScheduler().execute(task);
+        return task;
+    }
+
+    private void offloadedWriteFailed(String key, Throwable error) {
+        PrefyMainThreadListener listener = mainThreadListener;
+        if (listener == null) {
+            error.printStackTrace();
+            return;
+        }
+        try {
+            listener.onOffloadedWriteFailed(key, error);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean writeValues(Map<String, Object> changes, boolean sync) {
+        PrefyCoalescer coalescer = this.coalescer;
+        if (coalescer == null)
+            return writeNow(changes, sync);
+        if (!sync) {
+            coalescer.add(changes);
+            invalidateObjectCache(changes.keySet());
+            return true;
+        }
+        coalescer.countSyncPut();
+        // the pending changes are written first, so they do not override this write later
+        synchronized (coalescer) {
+            Map<String, Object> written = coalescer.snapshot();
+            HashMap<String, Object> merged = new HashMap<>(written);
+            merged.putAll(changes);
+            boolean saved = writeNow(merged, true);
+            coalescer.written(written);
+            return saved;
+        }
+    }
+
+    /**
+     * write the changes to the store together
+     *
+     * @param changes - key to new value, PrefyEditor.REMOVE for removed keys
+     * @param sync    - true to commit, false to apply
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    private boolean writeNow(Map<String, Object> changes, boolean sync) {
+        ArrayList<String> replacedFiles = null;
+        if (sidecar.mayHaveFiles()) {
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                String pointer = storedPointer(change.getKey());
+                if (pointer != null && !pointer.equals(change.getValue())) {
+                    if (replacedFiles == null)
+                        replacedFiles = new ArrayList<>();
+                    replacedFiles.add(pointer);
+                }
+            }
+        }
+        // the store removes keys with a null value
+        HashMap<String, Object> values = new HashMap<>(changes.size() * 2);
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Object value = change.getValue();
+            values.put(change.getKey(), value == PrefyEditor.REMOVE ? null : value);
+            // a commit saves the files of large values before their pointers
+            if (sync && value instanceof String && PrefySidecar.isPointer((String) value)) {
+                try {
+                    sidecar.persist((String) value);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        }
+        boolean saved = store().write(values, sync);
+        PrefyPrimitiveSnapshot snapshot = this.snapshot;
+        // the value is read again from the store, writes of the key from other threads may end in another order
+        if (snapshot != null)
+            snapshot.remove(values.keySet());
+        // after the write, so a value that was read before it can not stay in the cache
+        invalidateObjectCache(changes.keySet());
+        if (saved && replacedFiles != null) {
+            if (sync)
+                deleteFiles(replacedFiles);
+            else
+                deleteFilesAfterSync(replacedFiles);
+        }
+        return saved;
+    }
+
+    private void deleteFiles(List<String> pointers) {
+        for (String pointer : pointers)
+            sidecar.delete(pointer);
+    }
+
+    /**
+     * delete replaced files once the apply that replaced them is on the disk - until then a crash would
+     * leave the old pointers saved. If the sync write fails the files are left to deleteOrphanFiles
+     */
+    private void deleteFilesAfterSync(final List<String> pointers) {
+        writeScheduler().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // an empty sync write returns after the writes before it
+                    if (store().write(new HashMap<String, Object>(), true))
+                        deleteFiles(pointers);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private void invalidateObjectCache(Set<String> keys) {
+        PrefyObjectCache cache = objectCache;
+        if (cache != null) {
+            for (String key : keys)
+                cache.invalidate(key);
+        }
+    }
+
+    /**
+     * delete the sidecar files that no saved value points to
+     */
+    private void deleteOrphanFiles() {
+        if (!sidecar.mayHaveFiles())
+            return;
+        try {
+            HashSet<Object> values = new HashSet<>(store().getAll().values());
+            PrefyCoalescer coalescer = this.coalescer;
+            if (coalescer != null)
+                values.addAll(coalescer.snapshot().values());
+            HashSet<String> pointers = new HashSet<>();
+            for (Object value : values) {
+                if (value instanceof String && PrefySidecar.isPointer((String) value))
+                    pointers.add((String) value);
+            }
+            sidecar.deleteOrphans(pointers, ORPHAN_MIN_AGE_MILLIS);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean putLarge(String key, PrefySidecar.Content content) {
+        synchronized (sidecar) {
+            String pointer;
+            try {
+                pointer = sidecar.write(content);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            if (putStringSync(key, pointer))
+                return true;
+            sidecar.delete(pointer);
+            return false;
+        }
+    }
+
+    /**
+     * @return the String that is saved in the store, without the pending writes and the expiry check
+     */
+    String storedString(String key) {
+        try {
+            return store().getString(key, null);
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the saved sidecar pointer of the key, or null if the value is not saved in a file
+     */
+    private String storedPointer(String key) {
+        try {
+            String value = store().getString(key, null);
+            return PrefySidecar.isPointer(value) ? value : null;
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return reader of the saved json, from the sidecar file if the value is a pointer
+     */
+    private Reader openJson(String json) {
+        if (!PrefySidecar.isPointer(json)) {
+            if (PrefyCompression.isCompressed(json)) {
+                try {
+                    json = compression.decompress(json);
+                } catch (IOException e) {
+                    throw new JsonSyntaxException(e);
+                }
+            }
+            if (!(codecOf(json) instanceof PrefyJsonCodec))
+                json = decode(json, JsonElement.class).toString();
+            return new StringReader(json);
+        }
+        try {
+            BufferedReader in = sidecar.open(json);
+            String data = encodedContent(in);
+            return data == null ? in : new StringReader(decode(data, JsonElement.class).toString());
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * a sidecar file holds json, or a value that was saved in a file because it is large - that may
+     * be of another codec or compressed
+     *
+     * @param in - reader of the file, at its start
+     * @return all the content if it is not json, else null and the reader is still at the start
+     */
+    private String encodedContent(BufferedReader in) throws IOException {
+        char[] head = new char[16];
+        in.mark(head.length);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0)
+            length += read;
+        in.reset();
+        String start = new String(head, 0, length);
+        if (!PrefyCompression.isCompressed(start) && codecOf(start) instanceof PrefyJsonCodec)
+            return null;
+        StringBuilder data = new StringBuilder();
+        char[] chunk = new char[8192];
+        while ((read = in.read(chunk)) > 0)
+            data.append(chunk, 0, read);
+        in.close();
+        return data.toString();
+    }
+
+    /**
+     * read and decode a json value, through the object cache if enabled
+     *
+     * @param operation - the method that reads it, for the metrics
+     */
+    @SuppressWarnings("unchecked")
+    <T> T readObject(String operation, String key, T defValue, Type type) {
+        if (expiry.isExpired(key))
+            return defValue;
+        PrefyMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        PrefyObjectCache cache = objectCache;
+        long stamp = 0;
+        if (cache != null) {
+            Object cached = cache.get(key, type);
+            if (metrics != null)
+                metrics.onCacheLookup("object", cached != PrefyObjectCache.MISS);
+            if (cached != PrefyObjectCache.MISS) {
+                if (metrics != null)
+                    record(metrics, operation, key, start, 0);
+                return (T) cached;
+            }
+            stamp = cache.stamp();
+        }
+        String json = stringValue(key, "");
+        T value;
+        if (deltas.has(key))
+            value = decodeWithDeltas(key, json, defValue, this.<T>adapter(type));
+        else if (json.isEmpty())
+            return defValue;
+        else
+            value = decodeStored(key, json, defValue, this.<T>adapter(type));
+        int length = cache != null || metrics != null ? storedLength(json) : 0;
+        if (cache != null)
+            cache.put(key, type, value, length, stamp);
+        if (metrics != null)
+            record(metrics, operation, key, start, length);
+        return value;
+    }
+
+    /**
+     * @return true if the key has list or map changes that are not folded into its value yet
+     */
+    boolean hasDeltas(String key) {
+        return deltas.has(key);
+    }
+
+    /**
+     * decode a saved list or map together with the changes that were added to it since it was written
+     *
+     * @param key      - key the value was read from
+     * @param json     - the saved value, empty if the key not exist
+     * @param defValue - returned if the key not exist and has no changes
+     * @param adapter  - adapter of the type to decode
+     */
+    <T> T decodeWithDeltas(String key, String json, T defValue, TypeAdapter<T> adapter) {
+        // writes of a value with changes drop them under the lock of the key, so the value and the changes
+        // are read from the same version
+        synchronized (lockOf(key)) {
+            String records = stringValue(PrefyDeltas.PREFIX + key, "");
+            if (records.isEmpty()) {
+                json = stringValue(key, "");
+                return json.isEmpty() ? defValue : decodeStored(key, json, defValue, adapter);
+            }
+            return adapter.fromJsonTree(deltas.merge(baseValue(key), records));
+        }
+    }
+
+    /**
+     * @return the saved value of the key as a json tree, null if the key not exist
+     */
+    private JsonElement baseValue(String key) {
+        String json = stringValue(key, "");
+        return json.isEmpty() ? null : decodeStored(key, json, null, this.<JsonElement>adapter(JsonElement.class));
+    }
+
+    /**
+     * save a change of a list or a map, and fold the changes into the value if there are enough of them.
+     * The changes of a key are saved as one String, so this reads and writes all of them - up to
+     * FOLD_RECORDS while the folds keep up, and never more than MAX_RECORDS.
+     *
+     * @param key    - key of the list or the map
+     * @param record - the change
+     */
+    private void addDelta(String key, String record) {
+        String deltaKey = PrefyDeltas.PREFIX + key;
+        // a write of the value can not drop the changes between the read and the write of them
+        synchronized (lockOf(key)) {
+            String saved = stringValue(deltaKey, "");
+            edit().putString(deltaKey, saved.isEmpty() ? record : saved + '\n' + record).apply();
+            invalidateObjectCache(Collections.singleton(key));
+            int records = PrefyDeltas.count(saved) + 1;
+            if (records >= PrefyDeltas.MAX_RECORDS)
+                fold(key);
+            else if (records >= PrefyDeltas.FOLD_RECORDS)
+                deltas.scheduleFold(key);
+        }
+    }
+
+    /**
+     * write the value of the key with its changes merged, and drop the changes
+     */
+    void fold(String key) {
+        TypeAdapter<JsonElement> adapter = adapter(JsonElement.class);
+        // a write of the value can not land between the read of it and the write of the merged value
+        synchronized (lockOf(key)) {
+            String records = stringValue(PrefyDeltas.PREFIX + key, "");
+            if (records.isEmpty())
+                return;
+            JsonElement merged = deltas.merge(baseValue(key), records);
+            // writing the value drops its changes, in the same write
+            PrefyEditor editor = edit().putString(key, encode(merged, adapter));
+            long expiresAt = expiry.expiresAt(key);
+            if (expiresAt != 0)
+                editor.expireAfter(key, Math.max(0, expiresAt - System.currentTimeMillis()));
+            editor.apply();
+        }
+    }
+
+    /**
+     * @return length of a saved value, of its sidecar file if the value is a pointer
+     */
+    int storedLength(String value) {
+        return PrefySidecar.isPointer(value) ? (int) Math.min(Integer.MAX_VALUE, sidecar.length(value)) : value.length();
+    }
+
+    /**
+     * report a call that started at the given time to the metrics
+     */
+    void record(PrefyMetrics metrics, String operation, String key, long start, int payloadLength) {
+        metrics.onCall(operation, key, System.nanoTime() - start, payloadLength,
+                Looper.myLooper() == Looper.getMainLooper());
+    }
+
+    /**
+     * decode a value that was read from the store, from the sidecar file if the value is a pointer
+     *
+     * @param key      - key the value was read from
+     * @param json     - the saved value
+     * @param defValue - returned if the file of the pointer was deleted and the key has no other value
+     * @param adapter  - adapter of the type to decode
+     */
+    <T> T decodeStored(String key, String json, T defValue, TypeAdapter<T> adapter) {
+        if (!PrefySidecar.isPointer(json))
+            return decode(json, adapter);
+        try {
+            return decodeFile(json, adapter);
+        } catch (FileNotFoundException e) {
+            // the value was replaced after the pointer was read
+            String current = stringValue(key, "");
+            if (current.isEmpty() || current.equals(json))
+                return defValue;
+            return decodeStored(key, current, defValue, adapter);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * decode a value of a snapshot - unlike decodeStored, a value that was replaced since the snapshot was
+     * taken is not read again from the store, so the snapshot never returns a newer value
+     *
+     * @param json     - the value in the snapshot
+     * @param defValue - returned if the file of the pointer was deleted, as the value was replaced
+     * @param adapter  - adapter of the type to decode
+     */
+    <T> T decodeSnapshot(String json, T defValue, TypeAdapter<T> adapter) {
+        if (!PrefySidecar.isPointer(json))
+            return decode(json, adapter);
+        try {
+            return decodeFile(json, adapter);
+        } catch (FileNotFoundException e) {
+            return defValue;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    private <T> T decodeFile(String pointer, TypeAdapter<T> adapter) throws IOException {
+        BufferedReader in = sidecar.open(pointer);
+        String data = encodedContent(in);
+        return data == null ? fromJson(in, adapter) : decode(data, adapter);
+    }
+
+    private <T> T fromJson(Reader in, TypeAdapter<T> adapter) {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+        try {
+            return adapter.read(reader);
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> TypeAdapter<T> adapter(Type type) {
+        TypeAdapter<?> adapter = adapters.get(type);
+        if (adapter == null) {
+            adapter = gson.getAdapter(TypeToken.get(type));
+            adapters.putIfAbsent(type, adapter);
+        }
+        return (TypeAdapter<T>) adapter;
+    }
+
+    private Type listType(Type elementType) {
+        Type type = listTypes.get(elementType);
+        if (type == null) {
+            type = TypeToken.getParameterized(ArrayList.class, elementType).getType();
+            listTypes.putIfAbsent(elementType, type);
+        }
+        return type;
+    }
+
+    private Type mapType(Type keyType, Type valueType) {
+        ConcurrentHashMap<Type, Type> byValue = mapTypes.get(keyType);
+        if (byValue == null) {
+            mapTypes.putIfAbsent(keyType, new ConcurrentHashMap<Type, Type>());
+            byValue = mapTypes.get(keyType);
+        }
+        Type type = byValue.get(valueType);
+        if (type == null) {
+            type = TypeToken.getParameterized(HashMap.class, keyType, valueType).getType();
+            byValue.putIfAbsent(valueType, type);
+        }
+        return type;
+    }
+
+    /**
+     * encode a value with the codec of this instance
+     */
+    String encode(Object value) {
+        try {
+            return toStored(compression.compress(codec.encode(value, adapter(value == null ? Object.class : value.getClass()))));
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * encode a value with the codec of this instance and a known adapter
+     */
+    <T> String encode(T value, TypeAdapter<T> adapter) {
+        try {
+            return toStored(compression.compress(codec.encode(value, adapter)));
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * @return the encoded value, or a pointer to a sidecar file that holds it if it is large
+     */
+    private String toStored(String data) {
+        if (largeValueMinLength == 0 || data.length() < largeValueMinLength)
+            return data;
+        // written on the writer thread, or by the commit that saves the pointer
+        return sidecar.writeLater(data, writeScheduler());
+    }
+
+    /**
+     * decode a saved value with the codec that encoded it
+     */
+    private <T> T decode(String data, Type type) {
+        return decode(data, this.<T>adapter(type));
+    }
+
+    private <T> T decode(String data, TypeAdapter<T> adapter) {
+        try {
+            if (PrefyCompression.isCompressed(data))
+                data = compression.decompress(data);
+            return codecOf(data).decode(data, adapter);
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private PrefyCodec codecOf(String data) {
+        for (PrefyCodec decoder : decoders) {
+            if (decoder.canDecode(data))
+                return decoder;
+        }
+        return DEFAULT_DECODERS[DEFAULT_DECODERS.length - 1];
     }
 
 
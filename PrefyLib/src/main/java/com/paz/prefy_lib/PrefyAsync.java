@@ -0,0 +1,478 @@
+package com.paz.prefy_lib;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * The get, put and remove methods of {@link Prefy} that run on the Prefy io thread and return a
+ * {@link PrefyFuture}, so no thread of the app waits for the disk. Get it with {@link Prefy#async()}.
+ * <p>
+ * The operations run in the order they were called - a get sees all the puts that were called before it.
+ * Puts that are queued together, with no get between them, are written with a single editor commit,
+ * and their futures complete with its result when the changes are on the disk.
+ */
+public class PrefyAsync {
+    private final Prefy prefy;
+    private final Executor executor;
+    // the puts of the next commit, null if the next put should start a new commit
+    private ArrayList<Write> batch;
+
+    private static class Write {
+        final PrefyBatch changes;
+        final PrefyFuture<PrefyMsg> future;
+
+        Write(PrefyBatch changes, PrefyFuture<PrefyMsg> future) {
+            this.changes = changes;
+            this.future = future;
+        }
+    }
+
+    PrefyAsync(Prefy prefy, Executor executor) {
+        this.prefy = prefy;
+        this.executor = executor;
+    }
+
+    /**
+     * get the saved String
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<String> getString(final String key, final String defValue) {
+        return read(new Callable<String>() {
+            @Override
+            public String call() {
+                return prefy.getString(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved boolean
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Boolean> getBoolean(final String key, final boolean defValue) {
+        return read(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return prefy.getBoolean(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved int
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Integer> getInt(final String key, final int defValue) {
+        return read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return prefy.getInt(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved float
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Float> getFloat(final String key, final float defValue) {
+        return read(new Callable<Float>() {
+            @Override
+            public Float call() {
+                return prefy.getFloat(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved long
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Long> getLong(final String key, final long defValue) {
+        return read(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return prefy.getLong(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved double
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Double> getDouble(final String key, final double defValue) {
+        return read(new Callable<Double>() {
+            @Override
+            public Double call() {
+                return prefy.getDouble(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved String set
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public PrefyFuture<Set<String>> getStringSet(final String key, final Set<String> defValue) {
+        return read(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() {
+                return prefy.getStringSet(key, defValue);
+            }
+        });
+    }
+
+    /**
+     * get the saved object
+     *
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @param type     the type of the excepted object - for example MyObject.class
+     * @return completes with the value, or with defValue if the key not exist
+     */
+    public <T> PrefyFuture<T> getObject(final String key, final T defValue, final Class<T> type) {
+        return read(new Callable<T>() {
+            @Override
+            public T call() {
+                return prefy.getObject(key, defValue, type);
+            }
+        });
+    }
+
+    /**
+     * get the saved list
+     *
+     * @param key         - key for the requested value
+     * @param defValue    - default in case the key not exist
+     * @param elementType - the type of the list elements - for example MyObject.class
+     * @return completes with the list, or with defValue if the key not exist
+     */
+    public <T> PrefyFuture<ArrayList<T>> getList(final String key, final ArrayList<T> defValue, final Type elementType) {
+        return read(new Callable<ArrayList<T>>() {
+            @Override
+            public ArrayList<T> call() {
+                return prefy.getList(key, defValue, elementType);
+            }
+        });
+    }
+
+    /**
+     * get the saved map
+     *
+     * @param key       - key for the requested value
+     * @param defValue  - default in case the key not exist
+     * @param keyType   - the type of the map keys - for example String.class
+     * @param valueType - the type of the map values - for example MyObject.class
+     * @return completes with the map, or with defValue if the key not exist
+     */
+    public <K, V> PrefyFuture<HashMap<K, V>> getMap(final String key, final HashMap<K, V> defValue, final Type keyType, final Type valueType) {
+        return read(new Callable<HashMap<K, V>>() {
+            @Override
+            public HashMap<K, V> call() {
+                return prefy.getMap(key, defValue, keyType, valueType);
+            }
+        });
+    }
+
+    /**
+     * read several keys together, see {@link Prefy#getAll(String...)}
+     *
+     * @param keys - the keys to read
+     * @return completes with the values of the keys
+     */
+    public PrefyFuture<PrefySnapshot> getAll(final String... keys) {
+        return read(new Callable<PrefySnapshot>() {
+            @Override
+            public PrefySnapshot call() {
+                return prefy.getAll(keys);
+            }
+        });
+    }
+
+    /**
+     * save String
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putString(final String key, final String value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putString(key, value);
+            }
+        });
+    }
+
+    /**
+     * save boolean
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putBoolean(final String key, final boolean value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putBoolean(key, value);
+            }
+        });
+    }
+
+    /**
+     * save int
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putInt(final String key, final int value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putInt(key, value);
+            }
+        });
+    }
+
+    /**
+     * save float
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putFloat(final String key, final float value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putFloat(key, value);
+            }
+        });
+    }
+
+    /**
+     * save long
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putLong(final String key, final long value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putLong(key, value);
+            }
+        });
+    }
+
+    /**
+     * save double
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putDouble(final String key, final double value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putDouble(key, value);
+            }
+        });
+    }
+
+    /**
+     * save String set
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> putStringSet(final String key, final Set<String> value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putStringSet(key, value);
+            }
+        });
+    }
+
+    /**
+     * save any object, it is encoded on the io thread - do not change it until the future completes
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public <T> PrefyFuture<PrefyMsg> putObject(final String key, final T value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putObject(key, value);
+            }
+        });
+    }
+
+    /**
+     * save any type of ArrayList, it is encoded on the io thread - do not change it until the future completes
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public <T> PrefyFuture<PrefyMsg> putArrayList(final String key, final ArrayList<T> value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putArrayList(key, value);
+            }
+        });
+    }
+
+    /**
+     * save any type of HashMap, it is encoded on the io thread - do not change it until the future completes
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return completes with saved_successfully when the value is on the disk, else with not_saved
+     */
+    public <E, T> PrefyFuture<PrefyMsg> putHashMap(final String key, final HashMap<E, T> value) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putHashMap(key, value);
+            }
+        });
+    }
+
+    /**
+     * remove key
+     *
+     * @param key - the key that should remove
+     * @return completes with saved_successfully when the key is removed from the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> remove(final String key) {
+        return write(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.remove(key);
+            }
+        });
+    }
+
+    /**
+     * write all the changes of the batch together
+     *
+     * @param batch - puts the changes on the given editor, called on the io thread
+     * @return completes with saved_successfully when the changes are on the disk, else with not_saved
+     */
+    public PrefyFuture<PrefyMsg> batch(PrefyBatch batch) {
+        return write(batch);
+    }
+
+    private <T> PrefyFuture<T> read(final Callable<T> read) {
+        final PrefyFuture<T> future = new PrefyFuture<>();
+        synchronized (this) {
+            // puts after this get go to a new commit, so the get does not see them
+            batch = null;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!future.start())
+                    return;
+                try {
+                    future.complete(read.call());
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private PrefyFuture<PrefyMsg> write(PrefyBatch changes) {
+        PrefyFuture<PrefyMsg> future = new PrefyFuture<>();
+        final ArrayList<Write> writes;
+        synchronized (this) {
+            if (batch != null) {
+                batch.add(new Write(changes, future));
+                return future;
+            }
+            writes = batch = new ArrayList<>();
+            writes.add(new Write(changes, future));
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                commit(writes);
+            }
+        });
+        return future;
+    }
+
+    private void commit(ArrayList<Write> writes) {
+        ArrayList<Write> started = new ArrayList<>();
+        PrefyEditor editor = prefy.edit();
+        synchronized (this) {
+            if (batch == writes)
+                batch = null;
+        }
+        for (Write write : writes) {
+            if (!write.future.start())
+                continue;
+            // each write on an editor of its own, so a write that fails adds nothing to the commit
+            PrefyEditor changes = prefy.edit();
+            try {
+                write.changes.edit(changes);
+            } catch (RuntimeException e) {
+                write.future.fail(e);
+                continue;
+            }
+            editor.addAll(changes);
+            started.add(write);
+        }
+        if (started.isEmpty())
+            return;
+        PrefyMsg result;
+        try {
+            result = editor.commit();
+        } catch (RuntimeException e) {
+            for (Write write : started)
+                write.future.fail(e);
+            return;
+        }
+        for (Write write : started)
+            write.future.complete(result);
+    }
+}
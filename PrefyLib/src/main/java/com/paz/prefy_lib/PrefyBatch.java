@@ -0,0 +1,13 @@
+package com.paz.prefy_lib;
+
+/**
+ * A group of changes that should be written together, see {@link Prefy#batch(PrefyBatch)}
+ */
+public interface PrefyBatch {
+    /**
+     * put all the changes of the batch on the given editor
+     *
+     * @param editor - the editor of the batch, do not call apply or commit on it
+     */
+    void edit(PrefyEditor editor);
+}
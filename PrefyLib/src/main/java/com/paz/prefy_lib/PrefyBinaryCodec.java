@@ -0,0 +1,249 @@
+package com.paz.prefy_lib;
+
+import android.util.Base64;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary codec. The value is turned to a Gson tree and the tree is written with a one byte
+ * tag per element, varints for whole numbers and lengths, and length prefixed utf-8 strings.
+ * Field names are written once, the next objects with the same field refer to it by index,
+ * so lists of objects do not repeat the names. The bytes are saved as Base64 after the "#b1:" tag.
+ */
+public class PrefyBinaryCodec implements PrefyCodec {
+    static final String TAG = "#b1:";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int ARRAY = 6;
+    private static final int OBJECT = 7;
+    // any other number, saved as its String
+    private static final int DECIMAL = 8;
+
+    @Override
+    public <T> String encode(T value, TypeAdapter<T> adapter) {
+        Output out = new Output();
+        out.write(adapter.toJsonTree(value));
+        return TAG + Base64.encodeToString(out.toByteArray(), Base64.NO_WRAP);
+    }
+
+    @Override
+    public <T> T decode(String data, TypeAdapter<T> adapter) throws IOException {
+        byte[] bytes = Base64.decode(data.substring(TAG.length()), Base64.NO_WRAP);
+        return adapter.fromJsonTree(new Input(bytes).read());
+    }
+
+    @Override
+    public boolean canDecode(String data) {
+        return data.startsWith(TAG);
+    }
+
+    private static final class Output {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        private final HashMap<String, Integer> names = new HashMap<>();
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        void write(JsonElement element) {
+            if (element == null || element.isJsonNull()) {
+                out.write(NULL);
+            } else if (element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                out.write(ARRAY);
+                writeVarint(array.size());
+                for (JsonElement item : array)
+                    write(item);
+            } else if (element.isJsonObject()) {
+                JsonObject object = element.getAsJsonObject();
+                out.write(OBJECT);
+                writeVarint(object.size());
+                for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                    writeName(entry.getKey());
+                    write(entry.getValue());
+                }
+            } else {
+                JsonPrimitive primitive = element.getAsJsonPrimitive();
+                if (primitive.isBoolean()) {
+                    out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+                } else if (primitive.isString()) {
+                    out.write(STRING);
+                    writeString(primitive.getAsString());
+                } else {
+                    writeNumber(primitive.getAsNumber());
+                }
+            }
+        }
+
+        private void writeNumber(Number number) {
+            if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+                out.write(LONG);
+                writeZigZag(number.longValue());
+            } else if (number instanceof Double || number instanceof Float) {
+                out.write(DOUBLE);
+                long bits = Double.doubleToRawLongBits(number.doubleValue());
+                for (int i = 0; i < 8; i++)
+                    out.write((int) (bits >>> (8 * i)));
+            } else {
+                String text = number.toString();
+                try {
+                    // whole numbers that were parsed lazily by Gson
+                    long value = Long.parseLong(text);
+                    out.write(LONG);
+                    writeZigZag(value);
+                } catch (NumberFormatException e) {
+                    out.write(DECIMAL);
+                    writeString(text);
+                }
+            }
+        }
+
+        /**
+         * 0 and the name the first time, the index of the name + 1 after that
+         */
+        private void writeName(String name) {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            names.put(name, names.size());
+            writeVarint(0);
+            writeString(name);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private final ArrayList<String> names = new ArrayList<>();
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        JsonElement read() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return JsonNull.INSTANCE;
+                case TRUE:
+                    return new JsonPrimitive(true);
+                case FALSE:
+                    return new JsonPrimitive(false);
+                case LONG:
+                    long zigZag = readVarint();
+                    return new JsonPrimitive((zigZag >>> 1) ^ -(zigZag & 1));
+                case DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++)
+                        bits |= (long) readByte() << (8 * i);
+                    return new JsonPrimitive(Double.longBitsToDouble(bits));
+                case STRING:
+                    return new JsonPrimitive(readString());
+                case DECIMAL:
+                    String text = readString();
+                    return new JsonPrimitive(text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0
+                            ? new BigInteger(text) : new BigDecimal(text));
+                case ARRAY:
+                    int size = readLength();
+                    JsonArray array = new JsonArray(size);
+                    for (int i = 0; i < size; i++)
+                        array.add(read());
+                    return array;
+                case OBJECT:
+                    int fields = readLength();
+                    JsonObject object = new JsonObject();
+                    for (int i = 0; i < fields; i++) {
+                        String name = readName();
+                        object.add(name, read());
+                    }
+                    return object;
+                default:
+                    throw new IOException("unknown tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        private int readByte() throws EOFException {
+            if (position >= bytes.length)
+                throw new EOFException();
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("bad varint at " + position);
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > bytes.length - position)
+                throw new IOException("bad length " + length + " at " + position);
+            return (int) length;
+        }
+
+        private String readName() throws IOException {
+            long index = readVarint();
+            if (index == 0) {
+                String name = readString();
+                names.add(name);
+                return name;
+            }
+            if (index > names.size())
+                throw new IOException("bad name index " + index + " at " + position);
+            return names.get((int) index - 1);
+        }
+
+        private String readString() throws IOException {
+            int length = readLength();
+            String value = new String(bytes, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
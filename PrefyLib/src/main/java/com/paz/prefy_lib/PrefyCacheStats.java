@@ -0,0 +1,61 @@
+package com.paz.prefy_lib;
+
+/**
+ * Snapshot of the counters of a Prefy cache
+ */
+public class PrefyCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final long maxSize;
+
+    PrefyCacheStats(long hitCount, long missCount, long evictionCount, long size, long maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return number of reads that were served from the cache
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of reads that were not in the cache
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of values that were dropped to keep the cache under its max size
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return current size of the cache, in entries or estimated bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return max size of the cache, in entries or estimated bytes
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "PrefyCacheStats{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+                + ", size=" + size + "/" + maxSize + "}";
+    }
+}
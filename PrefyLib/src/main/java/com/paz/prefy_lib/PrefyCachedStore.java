@@ -0,0 +1,255 @@
+package com.paz.prefy_lib;
+
+import android.os.SystemClock;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store that keeps the values it read from another store in memory, so reading a key again does not
+ * go to that store. Made for encrypted stores, where every read decrypts the value - with this store
+ * a value is decrypted on its first read only.
+ * At most maxEntries values are kept, the least recently read goes first, and a value can be kept
+ * for a limited time. {@link #clear()} drops all the plain values, for example when the app is locked.
+ */
+public class PrefyCachedStore implements PrefyStore {
+    private final PrefyStore store;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // changes on every write and clear, a value that was read before one of them is not kept
+    private long generation;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private final PrefyStoreListener invalidator = new PrefyStoreListener() {
+        @Override
+        public void onChanged(String key) {
+            invalidate(key);
+        }
+    };
+
+    private static class Entry {
+        final Object value;
+        final long time;
+
+        Entry(Object value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    /**
+     * @param store      - the store to read from and write to, usually encrypted
+     * @param maxEntries - max number of values to keep
+     * @param ttlMillis  - how long a value is kept after it was read, 0 to keep it until it is evicted or cleared
+     */
+    public PrefyCachedStore(PrefyStore store, int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries <= 0");
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("ttlMillis < 0");
+        this.store = store;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // changes that do not come through this store, like a clear of the file
+        store.registerListener(invalidator);
+    }
+
+    /**
+     * drop all the kept values
+     */
+    public synchronized void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    /**
+     * @return the counters of the kept values
+     */
+    public synchronized PrefyCacheStats stats() {
+        return new PrefyCacheStats(hitCount, missCount, evictionCount, entries.size(), maxEntries);
+    }
+
+    /**
+     * look up a kept value for a get, and count it as a hit or a miss
+     */
+    private synchronized Object cached(String key) {
+        Object value = peek(key);
+        if (value == null)
+            missCount++;
+        else
+            hitCount++;
+        return value;
+    }
+
+    /**
+     * look up a kept value without counting it - for contains and bulk reads, which are not gets of the key
+     */
+    private synchronized Object peek(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && ttlMillis > 0 && SystemClock.elapsedRealtime() - entry.time >= ttlMillis) {
+            entries.remove(key);
+            entry = null;
+        }
+        return entry == null ? null : entry.value;
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * keep a value that was read, unless the key was written since the read started
+     */
+    private synchronized void keep(String key, Object value, long readGeneration) {
+        if (readGeneration != generation)
+            return;
+        entries.put(key, new Entry(value, SystemClock.elapsedRealtime()));
+        if (entries.size() > maxEntries) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    private synchronized void invalidate(String key) {
+        if (key == null)
+            entries.clear();
+        else
+            entries.remove(key);
+        generation++;
+    }
+
+    // a value that equals the default may be missing, so it is not kept
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (String) cached;
+        long readGeneration = generation();
+        String value = store.getString(key, defValue);
+        if (value != defValue)
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (Set<String>) cached;
+        long readGeneration = generation();
+        Set<String> value = store.getStringSet(key, defValue);
+        if (value != defValue)
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (Integer) cached;
+        long readGeneration = generation();
+        int value = store.getInt(key, defValue);
+        if (value != defValue)
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (Long) cached;
+        long readGeneration = generation();
+        long value = store.getLong(key, defValue);
+        if (value != defValue)
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (Float) cached;
+        long readGeneration = generation();
+        float value = store.getFloat(key, defValue);
+        if (Float.floatToRawIntBits(value) != Float.floatToRawIntBits(defValue))
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object cached = cached(key);
+        if (cached != null)
+            return (Boolean) cached;
+        long readGeneration = generation();
+        boolean value = store.getBoolean(key, defValue);
+        if (value != defValue)
+            keep(key, value, readGeneration);
+        return value;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return peek(key) != null || store.contains(key);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return store.getAll();
+    }
+
+    @Override
+    public Map<String, ?> getAll(Collection<String> keys) {
+        HashMap<String, Object> values = new HashMap<>(keys.size() * 2);
+        long readGeneration;
+        synchronized (this) {
+            for (String key : keys) {
+                Object cached = peek(key);
+                if (cached == null)
+                    break;
+                values.put(key, cached);
+            }
+            if (values.size() == keys.size())
+                return values;
+            readGeneration = generation;
+        }
+        // one read of the store for all the keys, and keep the values for the next reads
+        Map<String, ?> read = store.getAll(keys);
+        for (Map.Entry<String, ?> entry : read.entrySet())
+            keep(entry.getKey(), entry.getValue(), readGeneration);
+        return read;
+    }
+
+    @Override
+    public boolean write(Map<String, Object> changes, boolean sync) {
+        boolean saved = store.write(changes, sync);
+        // after the write, so a value that was read before it can not be kept
+        for (String key : changes.keySet())
+            invalidate(key);
+        return saved;
+    }
+
+    @Override
+    public void registerListener(PrefyStoreListener listener) {
+        store.registerListener(listener);
+    }
+
+    @Override
+    public void unregisterListener(PrefyStoreListener listener) {
+        store.unregisterListener(listener);
+    }
+}
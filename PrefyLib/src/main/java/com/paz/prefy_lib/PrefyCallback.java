@@ -0,0 +1,12 @@
+package com.paz.prefy_lib;
+
+/**
+ * Gets the result of an async operation, see {@link PrefyFuture#whenDone(PrefyCallback, java.util.concurrent.Executor)}
+ */
+public interface PrefyCallback<T> {
+    /**
+     * @param value - the result, null if the operation failed
+     * @param error - the failure, null if the operation succeeded
+     */
+    void onDone(T value, Throwable error);
+}
@@ -0,0 +1,11 @@
+package com.paz.prefy_lib;
+
+/**
+ * Called when an observed key changed, see {@link Prefy#observe} and {@link Prefy#observePrefix}
+ */
+public interface PrefyChangeListener {
+    /**
+     * @param key - the changed key, null if all the keys were removed
+     */
+    void onChanged(String key);
+}
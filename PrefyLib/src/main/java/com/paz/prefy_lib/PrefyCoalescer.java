@@ -0,0 +1,110 @@
+package com.paz.prefy_lib;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds async writes in memory and flushes them together, after no write came for the quiet period
+ * or when the oldest pending write waited the max delay.
+ */
+class PrefyCoalescer {
+    private final ConcurrentHashMap<String, Object> pending = new ConcurrentHashMap<>();
+    private final long quietMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Prefy prefy;
+    private final AtomicLong putsReceived = new AtomicLong();
+    private final AtomicLong commitsIssued = new AtomicLong();
+    private long firstPut;
+    private long lastPut;
+    private boolean scheduled;
+
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            long delay;
+            synchronized (PrefyCoalescer.this) {
+                delay = delayToFlush(System.currentTimeMillis());
+                if (delay > 0) {
+                    scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                scheduled = false;
+            }
+            prefy.flush(PrefyCoalescer.this);
+        }
+    };
+
+    /**
+     * @param prefy - writes the pending changes on flush
+     */
+    PrefyCoalescer(Prefy prefy, long quietMillis, long maxDelayMillis, ScheduledExecutorService scheduler) {
+        if (quietMillis < 0 || maxDelayMillis < quietMillis)
+            throw new IllegalArgumentException("need 0 <= quietMillis <= maxDelayMillis");
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = scheduler;
+        this.prefy = prefy;
+    }
+
+    /**
+     * @return the value that waits to be written, PrefyEditor.REMOVE for a removed key, or null if the key is not pending
+     */
+    Object get(String key) {
+        return pending.get(key);
+    }
+
+    /**
+     * keep the changes until the next flush
+     */
+    synchronized void add(Map<String, Object> changes) {
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            // putString with null removes the key
+            Object value = change.getValue();
+            pending.put(change.getKey(), value == null ? PrefyEditor.REMOVE : value);
+        }
+        putsReceived.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (!scheduled) {
+            scheduled = true;
+            firstPut = now;
+            scheduler.schedule(check, quietMillis, TimeUnit.MILLISECONDS);
+        }
+        lastPut = now;
+    }
+
+    /**
+     * @return copy of the pending changes, pass it to written after it was written
+     */
+    Map<String, Object> snapshot() {
+        return new HashMap<>(pending);
+    }
+
+    /**
+     * drop the changes that were written, unless a newer value came for the key in the meantime
+     */
+    void written(Map<String, Object> snapshot) {
+        for (Map.Entry<String, Object> change : snapshot.entrySet())
+            pending.remove(change.getKey(), change.getValue());
+        commitsIssued.incrementAndGet();
+    }
+
+    /**
+     * count a sync write, it is written right away with the pending changes
+     */
+    void countSyncPut() {
+        putsReceived.incrementAndGet();
+    }
+
+    PrefyWriteStats stats() {
+        return new PrefyWriteStats(putsReceived.get(), commitsIssued.get(), pending.size());
+    }
+
+    private long delayToFlush(long now) {
+        return Math.min(lastPut + quietMillis, firstPut + maxDelayMillis) - now;
+    }
+}
@@ -0,0 +1,35 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+
+/**
+ * Turns the saved objects (putObject, putArray, putArrayList, putHashMap) to the String that is
+ * saved in shared preferences and back. The Gson adapter of the value type is given to the codec,
+ * so every codec supports the same types as Gson does.
+ * Select the codec with {@link Prefy#init(android.content.Context, boolean, PrefyCodec)}
+ */
+public interface PrefyCodec {
+    /**
+     * @param value   - the value to save
+     * @param adapter - Gson adapter of the value type
+     * @return the value encoded to a String
+     */
+    <T> String encode(T value, TypeAdapter<T> adapter) throws IOException;
+
+    /**
+     * @param data    - a String that this codec encoded
+     * @param adapter - Gson adapter of the requested type
+     * @return the decoded value
+     */
+    <T> T decode(String data, TypeAdapter<T> adapter) throws IOException;
+
+    /**
+     * called with every saved value, so values that were saved by another codec still decode
+     *
+     * @param data - a saved value
+     * @return true if this codec encoded the data
+     */
+    boolean canDecode(String data);
+}
@@ -0,0 +1,66 @@
+package com.paz.prefy_lib;
+
+import android.util.Base64;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Compresses encoded values from a minimum length. A compressed value is saved as Base64 after the
+ * "#z1:" tag and the name of its compressor, values without the tag are read as they are.
+ */
+class PrefyCompression {
+    static final String TAG = "#z1:";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final PrefyCompressor DEFLATE = new PrefyDeflateCompressor();
+
+    // null if values are not compressed
+    private final PrefyCompressor compressor;
+    private final int minLength;
+
+    /**
+     * @param compressor - null to save values as they are, compressed values are still read
+     * @param minLength  - values from this length are compressed
+     */
+    PrefyCompression(PrefyCompressor compressor, int minLength) {
+        this.compressor = compressor;
+        this.minLength = minLength;
+    }
+
+    static boolean isCompressed(String data) {
+        return data.startsWith(TAG);
+    }
+
+    /**
+     * @return the compressed value, or the value itself if it is short or does not get smaller
+     */
+    String compress(String data) throws IOException {
+        if (compressor == null || data.length() < minLength)
+            return data;
+        byte[] packed = compressor.compress(data.getBytes(UTF_8));
+        // Base64 makes it a third longer
+        if ((long) (packed.length + 2) / 3 * 4 + TAG.length() + compressor.name().length() + 1 >= data.length())
+            return data;
+        return TAG + compressor.name() + ':' + Base64.encodeToString(packed, Base64.NO_WRAP);
+    }
+
+    /**
+     * @param data - a value that isCompressed
+     * @return the value before it was compressed
+     */
+    String decompress(String data) throws IOException {
+        int end = data.indexOf(':', TAG.length());
+        if (end < 0)
+            throw new IOException("compressed value without a compressor name");
+        String name = data.substring(TAG.length(), end);
+        PrefyCompressor decompressor;
+        if (compressor != null && compressor.name().equals(name))
+            decompressor = compressor;
+        else if (PrefyDeflateCompressor.NAME.equals(name))
+            decompressor = DEFLATE;
+        else
+            throw new IOException("unknown compressor " + name);
+        byte[] packed = Base64.decode(data.substring(end + 1), Base64.NO_WRAP);
+        return new String(decompressor.decompress(packed), UTF_8);
+    }
+}
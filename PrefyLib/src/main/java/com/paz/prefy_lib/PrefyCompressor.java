@@ -0,0 +1,27 @@
+package com.paz.prefy_lib;
+
+import java.io.IOException;
+
+/**
+ * Compresses large saved objects, see {@link PrefyOptions#setCompression(int, PrefyCompressor)}.
+ * The name is saved with every compressed value, so values compressed by another compressor can
+ * still be read as long as it is the compressor of the store or {@link PrefyDeflateCompressor}.
+ */
+public interface PrefyCompressor {
+    /**
+     * @return short name that is saved with the values, without ':'
+     */
+    String name();
+
+    /**
+     * @param data - utf-8 bytes of the encoded value
+     * @return the compressed bytes
+     */
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * @param data - bytes that compress returned
+     * @return the original bytes
+     */
+    byte[] decompress(byte[] data) throws IOException;
+}
@@ -0,0 +1,242 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Changes of saved lists and maps (appendToList, putInMap and more) that are saved as small records
+ * next to the value instead of rewriting it. The records of a key are saved in one hidden key, one
+ * json record per line, and the keys that have records are saved in another hidden key.
+ * Reads merge the value with its records, and the records are folded into the value on a low priority
+ * thread once there are enough of them. A write of the value itself drops its records - such a write
+ * holds the lock of the key, and the records are added, folded and read under it too.
+ */
+class PrefyDeltas {
+    static final String KEY = "~prefy-deltas";
+    // followed by the key of the value
+    static final String PREFIX = "~prefy-delta:";
+    // records of a key that start a fold
+    static final int FOLD_RECORDS = 64;
+    // records of a key that are folded on the calling thread, if the folds fall behind
+    static final int MAX_RECORDS = 4 * FOLD_RECORDS;
+    private static final String APPEND = "a";
+    private static final String REMOVE = "r";
+    private static final String PUT = "p";
+    private static final String DELETE = "d";
+    private static final Type KEYS_TYPE = new TypeToken<ArrayList<String>>() {
+    }.getType();
+
+    private final Prefy prefy;
+    private final Gson gson;
+    private final ScheduledExecutorService folder;
+    // keys that have records
+    private final Set<String> keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // keys that wait for a fold
+    private final Set<String> folds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean loaded;
+
+    /**
+     * @param folder - low priority thread that folds the records into the values
+     */
+    PrefyDeltas(Prefy prefy, Gson gson, ScheduledExecutorService folder) {
+        this.prefy = prefy;
+        this.gson = gson;
+        this.folder = folder;
+    }
+
+    /**
+     * @return true if the key has records that a read should merge
+     */
+    boolean has(String key) {
+        if (!loaded) {
+            // a read does not wait for the store here, it waits with its own timeout
+            if (!prefy.isReady())
+                return false;
+            load();
+        }
+        return !keys.isEmpty() && keys.contains(key);
+    }
+
+    /**
+     * @return the keys that have records
+     */
+    Set<String> keys() {
+        if (!loaded)
+            load();
+        return keys;
+    }
+
+    /**
+     * @return true if the changes add the first records of a key or replace a value that has records -
+     * then call apply under the lock of the expiry
+     */
+    boolean affects(Map<String, Object> changes) {
+        if (!loaded)
+            load();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String key = change.getKey();
+            if (key.startsWith(PREFIX)) {
+                if (change.getValue() == PrefyEditor.REMOVE || !keys.contains(key.substring(PREFIX.length())))
+                    return true;
+            } else if (!keys.isEmpty() && keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * drop the records of the written values and update the keys that have records
+     *
+     * @param changes - key to new value, PrefyEditor.REMOVE for removed keys
+     * @return the changes, the removed records and the new value of the hidden key
+     */
+    synchronized Map<String, Object> apply(Map<String, Object> changes) {
+        LinkedHashMap<String, Object> withDeltas = new LinkedHashMap<>(changes);
+        boolean changed = false;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String key = change.getKey();
+            if (key.startsWith(PREFIX)) {
+                String value = key.substring(PREFIX.length());
+                if (change.getValue() == PrefyEditor.REMOVE)
+                    changed |= keys.remove(value);
+                else
+                    changed |= keys.add(value);
+            } else if (keys.remove(key)) {
+                withDeltas.put(PREFIX + key, PrefyEditor.REMOVE);
+                changed = true;
+            }
+        }
+        if (changed)
+            withDeltas.put(KEY, keys.isEmpty() ? PrefyEditor.REMOVE : gson.toJson(new ArrayList<>(keys), KEYS_TYPE));
+        return withDeltas;
+    }
+
+    String appendRecord(JsonElement element) {
+        return record(APPEND, null, element);
+    }
+
+    String removeRecord(JsonElement element) {
+        return record(REMOVE, null, element);
+    }
+
+    String putRecord(String mapKey, JsonElement value) {
+        return record(PUT, mapKey, value);
+    }
+
+    String deleteRecord(String mapKey) {
+        return record(DELETE, mapKey, null);
+    }
+
+    private String record(String operation, String mapKey, JsonElement value) {
+        JsonArray record = new JsonArray();
+        record.add(operation);
+        if (mapKey != null)
+            record.add(mapKey);
+        if (value != null)
+            record.add(value);
+        // compact json has no line breaks
+        return gson.toJson(record);
+    }
+
+    /**
+     * @return number of records
+     */
+    static int count(String records) {
+        if (records.isEmpty())
+            return 0;
+        int count = 1;
+        for (int i = records.indexOf('\n'); i >= 0; i = records.indexOf('\n', i + 1))
+            count++;
+        return count;
+    }
+
+    /**
+     * apply the records to the value
+     *
+     * @param value   - the saved list or map, null if the key not exist - it is changed, pass a value
+     *                that was just decoded
+     * @param records - the records of the key, one per line
+     * @return the changed value
+     */
+    JsonElement merge(JsonElement value, String records) {
+        JsonElement merged = value == null || value.isJsonNull() ? null : value;
+        int start = 0;
+        while (start < records.length()) {
+            int end = records.indexOf('\n', start);
+            if (end < 0)
+                end = records.length();
+            JsonArray record = gson.fromJson(records.substring(start, end), JsonArray.class);
+            start = end + 1;
+            String operation = record.get(0).getAsString();
+            if (operation.equals(APPEND) || operation.equals(REMOVE)) {
+                if (merged == null)
+                    merged = new JsonArray();
+                if (!merged.isJsonArray())
+                    throw new JsonSyntaxException("list change of a value that is not a list");
+                if (operation.equals(APPEND))
+                    merged.getAsJsonArray().add(record.get(1));
+                else
+                    merged.getAsJsonArray().remove(record.get(1));
+            } else {
+                if (merged == null)
+                    merged = new JsonObject();
+                if (!merged.isJsonObject())
+                    throw new JsonSyntaxException("map change of a value that is not a map");
+                if (operation.equals(PUT))
+                    merged.getAsJsonObject().add(record.get(1).getAsString(), record.get(2));
+                else
+                    merged.getAsJsonObject().remove(record.get(1).getAsString());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * fold the records of the key into its value on the low priority thread, unless a fold already waits
+     */
+    void scheduleFold(final String key) {
+        if (!folds.add(key))
+            return;
+        folder.execute(new Runnable() {
+            @Override
+            public void run() {
+                folds.remove(key);
+                try {
+                    prefy.fold(key);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private synchronized void load() {
+        if (loaded)
+            return;
+        String json = prefy.storedString(KEY);
+        if (json != null) {
+            try {
+                ArrayList<String> saved = gson.fromJson(json, KEYS_TYPE);
+                if (saved != null)
+                    keys.addAll(saved);
+            } catch (JsonSyntaxException e) {
+                e.printStackTrace();
+            }
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,300 @@
+package com.paz.prefy_lib;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import static com.paz.prefy_lib.PrefyMsg.not_saved;
+import static com.paz.prefy_lib.PrefyMsg.saved_successfully;
+
+/**
+ * Collects several changes and writes all of them to shared preferences with a single editor flush.
+ * Get one with {@link Prefy#edit()} and finish with {@link #apply()} or {@link #commit()}
+ */
+public class PrefyEditor {
+    // marks a key that should be removed
+    static final Object REMOVE = new Object();
+
+    private final Prefy prefy;
+    private final LinkedHashMap<String, Object> changes = new LinkedHashMap<>();
+    // key to time to live in millis, null if no key of this editor expires
+    private HashMap<String, Long> ttls;
+    // the put method of the changes, "batch" if they were saved by different methods
+    private String operation;
+    // time the editor was created, 0 if the prefy has no metrics
+    private final long start;
+
+    PrefyEditor(Prefy prefy) {
+        this.prefy = prefy;
+        start = prefy.metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * save String
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putString(String key, String value) {
+        note("putString");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save boolean
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putBoolean(String key, boolean value) {
+        note("putBoolean");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save int
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putInt(String key, int value) {
+        note("putInt");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save float
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putFloat(String key, float value) {
+        note("putFloat");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save long
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putLong(String key, long value) {
+        note("putLong");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save Double
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putDouble(String key, double value) {
+        note("putDouble");
+        changes.put(key, Double.doubleToRawLongBits(value));
+        return this;
+    }
+
+    /**
+     * save String set
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public PrefyEditor putStringSet(String key, Set<String> value) {
+        note("putStringSet");
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * save any object
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public <T> PrefyEditor putObject(String key, T value) {
+        note("putObject");
+        changes.put(key, prefy.encode(value));
+        return this;
+    }
+
+    /**
+     * save any type of array
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public <T> PrefyEditor putArray(String key, T[] value) {
+        note("putArray");
+        changes.put(key, prefy.encode(value));
+        return this;
+    }
+
+    /**
+     * save any type of ArrayList
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public <T> PrefyEditor putArrayList(String key, ArrayList<T> value) {
+        note("putArrayList");
+        changes.put(key, prefy.encode(value.toArray()));
+        return this;
+    }
+
+    /**
+     * save any type of HashMap
+     *
+     * @param key   - key for the value
+     * @param value - the value to save
+     * @return this editor, for chaining
+     */
+    public <E, T> PrefyEditor putHashMap(String key, HashMap<E, T> value) {
+        note("putHashMap");
+        changes.put(key, prefy.encode(value));
+        return this;
+    }
+
+    /**
+     * remove key
+     *
+     * @param key - the key that should remove
+     * @return this editor, for chaining
+     */
+    public PrefyEditor remove(String key) {
+        note("remove");
+        changes.put(key, REMOVE);
+        return this;
+    }
+
+    /**
+     * remove the key after the given time - it reads as not exist from then on. A key that is saved
+     * again without a time to live does not expire
+     *
+     * @param key       - key of a value that this editor saves, or of a saved value
+     * @param ttlMillis - time to live from now
+     * @return this editor, for chaining
+     */
+    public PrefyEditor expireAfter(String key, long ttlMillis) {
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("ttlMillis < 0");
+        if (ttls == null)
+            ttls = new HashMap<>();
+        ttls.put(key, ttlMillis);
+        return this;
+    }
+
+    /**
+     * write all the changes in memory right away and to the disk in the background
+     */
+    public void apply() {
+        if (!changes.isEmpty() || ttls != null) {
+            prefy.write(changes, ttls, false);
+            report(false);
+        }
+    }
+
+    /**
+     * write all the changes to the disk and wait for the result
+     *
+     * @return saved_successfully if all the changes were written to persistent storage, else not_saved
+     */
+    public PrefyMsg commit() {
+        if (changes.isEmpty() && ttls == null)
+            return saved_successfully;
+        String key = firstKey();
+        if (prefy.offloadsSyncWrite(key)) {
+            prefy.write(changes, ttls, false);
+            // the result is not known yet - a failure goes to the main thread listener
+            prefy.syncInBackground(key);
+            report(true);
+            return saved_successfully;
+        }
+        boolean saved = prefy.write(changes, ttls, true);
+        report(true);
+        return saved ? saved_successfully : not_saved;
+    }
+
+    /**
+     * write all the changes in memory right away and to the disk on the Prefy writer thread, without
+     * waiting on this thread
+     *
+     * @return completes with saved_successfully when these changes and all the writes before them
+     * are in persistent storage, else with not_saved
+     */
+    public Future<PrefyMsg> commitAsync() {
+        if (!changes.isEmpty() || ttls != null) {
+            prefy.write(changes, ttls, false);
+            report(false);
+        }
+        return prefy.syncInBackground(null);
+    }
+
+    private String firstKey() {
+        if (!changes.isEmpty())
+            return changes.keySet().iterator().next();
+        return ttls.keySet().iterator().next();
+    }
+
+    /**
+     * add the changes of another editor of the same prefy, they override changes of this editor to the same keys
+     */
+    void addAll(PrefyEditor other) {
+        changes.putAll(other.changes);
+        if (other.ttls != null) {
+            if (ttls == null)
+                ttls = new HashMap<>();
+            ttls.putAll(other.ttls);
+        }
+        if (other.operation != null)
+            note(other.operation);
+    }
+
+    private void note(String operation) {
+        if (this.operation == null || this.operation.equals(operation))
+            this.operation = operation;
+        else
+            this.operation = "batch";
+    }
+
+    /**
+     * report the time from the creation of the editor, including the encoding of the objects, to the metrics
+     */
+    private void report(boolean sync) {
+        PrefyMetrics metrics = prefy.metrics;
+        if (metrics == null || start == 0)
+            return;
+        String name = operation == null ? "expireAfter" : operation;
+        String key = changes.size() == 1 ? changes.keySet().iterator().next() : null;
+        int payload = 0;
+        for (Object value : changes.values()) {
+            if (value instanceof String)
+                payload += prefy.storedLength((String) value);
+            else if (value instanceof Set) {
+                for (Object element : (Set<?>) value)
+                    payload += element == null ? 0 : ((String) element).length();
+            }
+        }
+        prefy.record(metrics, sync ? name + "Sync" : name, key, start, payload);
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.paz.prefy_lib;
+
+/**
+ * Gets the elements of a saved list one by one, see {@link Prefy#forEachInList}
+ */
+public interface PrefyElementCallback<T> {
+    /**
+     * @param element - the next element of the list
+     */
+    void onElement(T element);
+}
@@ -0,0 +1,211 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expiry times of keys that were saved with a time to live. All of them are saved in one hidden key,
+ * as a json map of key to time, and written together with the values they belong to.
+ * An expired key reads as removed, and is removed from the store on a low priority thread.
+ */
+class PrefyExpiry {
+    static final String KEY = "~prefy-expiry";
+    private static final Type MAP_TYPE = new TypeToken<HashMap<String, Long>>() {
+    }.getType();
+    private final Prefy prefy;
+    private final Gson gson;
+    private final ScheduledExecutorService sweeper;
+    // key to expiry time in System.currentTimeMillis
+    private final ConcurrentHashMap<String, Long> expiries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private ScheduledFuture<?> sweep;
+    private long sweepAt;
+
+    private final Runnable sweepTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (PrefyExpiry.this) {
+                sweep = null;
+            }
+            try {
+                removeExpired();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    };
+
+    /**
+     * @param sweeper - low priority thread that removes the expired keys
+     */
+    PrefyExpiry(Prefy prefy, Gson gson, ScheduledExecutorService sweeper) {
+        this.prefy = prefy;
+        this.gson = gson;
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * @return true if the key was saved with a time to live that passed
+     */
+    boolean isExpired(String key) {
+        if (!loaded) {
+            // a read does not wait for the store here, it waits with its own timeout
+            if (!prefy.isReady())
+                return false;
+            load();
+        }
+        if (expiries.isEmpty())
+            return false;
+        Long at = expiries.get(key);
+        return at != null && at <= System.currentTimeMillis();
+    }
+
+    /**
+     * @return the time the key expires at, or 0 if it does not expire
+     */
+    long expiresAt(String key) {
+        if (!loaded)
+            load();
+        Long at = expiries.get(key);
+        return at == null ? 0 : at;
+    }
+
+    /**
+     * @return true if the changes or the ttls change an expiry time - then call apply under the lock of this
+     */
+    boolean affects(Map<String, Object> changes, Map<String, Long> ttls) {
+        if (!loaded)
+            load();
+        if (ttls != null && !ttls.isEmpty())
+            return true;
+        if (expiries.isEmpty())
+            return false;
+        for (String key : changes.keySet()) {
+            if (expiries.containsKey(key))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * set the expiry times of the written keys - a key that is written without a time to live does not expire
+     *
+     * @param changes - key to new value, PrefyEditor.REMOVE for removed keys
+     * @param ttls    - key to time to live in millis, may be null
+     * @return the changes and the new value of the hidden key
+     */
+    synchronized Map<String, Object> apply(Map<String, Object> changes, Map<String, Long> ttls) {
+        long now = System.currentTimeMillis();
+        for (String key : changes.keySet()) {
+            if (ttls == null || !ttls.containsKey(key))
+                expiries.remove(key);
+        }
+        if (ttls != null) {
+            for (Map.Entry<String, Long> ttl : ttls.entrySet()) {
+                if (changes.get(ttl.getKey()) != PrefyEditor.REMOVE)
+                    expiries.put(ttl.getKey(), now + ttl.getValue());
+            }
+        }
+        LinkedHashMap<String, Object> withExpiry = new LinkedHashMap<>(changes);
+        withExpiry.put(KEY, expiries.isEmpty() ? PrefyEditor.REMOVE : gson.toJson(new HashMap<>(expiries), MAP_TYPE));
+        schedule();
+        return withExpiry;
+    }
+
+    /**
+     * remove the expired keys from the store with a single write
+     *
+     * @return number of removed keys
+     */
+    int removeExpired() {
+        final ArrayList<String> expired;
+        synchronized (this) {
+            expired = expired();
+            if (expired.isEmpty()) {
+                schedule();
+                return 0;
+            }
+        }
+        // the locks of the keys are taken before this one, as a write of keys with list and map changes does
+        return prefy.withKeyLocks(expired, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                synchronized (PrefyExpiry.this) {
+                    // a key may have been written again meanwhile
+                    expired.retainAll(expired());
+                    if (expired.isEmpty()) {
+                        schedule();
+                        return 0;
+                    }
+                    PrefyEditor editor = prefy.edit();
+                    for (String key : expired)
+                        editor.remove(key);
+                    // the write drops their expiry times and schedules the next sweep
+                    return editor.commit() == PrefyMsg.saved_successfully ? expired.size() : 0;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the keys that expired by now
+     */
+    private ArrayList<String> expired() {
+        load();
+        long now = System.currentTimeMillis();
+        ArrayList<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Long> expiry : expiries.entrySet()) {
+            if (expiry.getValue() <= now)
+                expired.add(expiry.getKey());
+        }
+        return expired;
+    }
+
+    private synchronized void load() {
+        if (loaded)
+            return;
+        String json = prefy.storedString(KEY);
+        if (json != null) {
+            try {
+                HashMap<String, Long> saved = gson.fromJson(json, MAP_TYPE);
+                if (saved != null)
+                    expiries.putAll(saved);
+            } catch (JsonSyntaxException e) {
+                e.printStackTrace();
+            }
+        }
+        loaded = true;
+        schedule();
+    }
+
+    /**
+     * run the sweep when the first key expires
+     */
+    private void schedule() {
+        long next = Long.MAX_VALUE;
+        for (Long at : expiries.values())
+            next = Math.min(next, at);
+        if (sweep != null) {
+            if (sweepAt <= next)
+                return;
+            sweep.cancel(false);
+            sweep = null;
+        }
+        if (next == Long.MAX_VALUE)
+            return;
+        sweepAt = next;
+        sweep = sweeper.schedule(sweepTask, Math.max(0, next - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+}
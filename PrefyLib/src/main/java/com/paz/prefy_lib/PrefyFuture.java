@@ -0,0 +1,154 @@
+package com.paz.prefy_lib;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of an operation of {@link PrefyAsync}. Wait for it with get, or get a callback with whenDone.
+ * Cancel works until the operation started.
+ */
+public class PrefyFuture<T> implements Future<T> {
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private int state = WAITING;
+    private T value;
+    private Throwable error;
+    // callbacks that were added before the result, null after it
+    private ArrayList<Runnable> callbacks = new ArrayList<>();
+
+    PrefyFuture() {
+    }
+
+    /**
+     * called by the io thread before the operation
+     *
+     * @return false if the future was cancelled, then the operation should not run
+     */
+    synchronized boolean start() {
+        if (state != WAITING)
+            return false;
+        state = RUNNING;
+        return true;
+    }
+
+    void complete(T value) {
+        finish(value, null, false);
+    }
+
+    void fail(Throwable error) {
+        finish(null, error, false);
+    }
+
+    /**
+     * @param cancel - true to cancel, only if the operation did not start
+     * @return false if the future was already done, or the operation started and cancel is true
+     */
+    private boolean finish(T value, Throwable error, boolean cancel) {
+        ArrayList<Runnable> callbacks;
+        synchronized (this) {
+            if (cancel ? state != WAITING : state == DONE || state == CANCELLED)
+                return false;
+            this.value = value;
+            this.error = error;
+            this.state = cancel ? CANCELLED : DONE;
+            callbacks = this.callbacks;
+            this.callbacks = null;
+        }
+        done.countDown();
+        for (Runnable callback : callbacks)
+            callback.run();
+        return true;
+    }
+
+    /**
+     * call the callback on the main thread when the result is ready, right away if it is ready
+     *
+     * @param callback - gets the result or the failure
+     * @return this future, for chaining
+     */
+    public PrefyFuture<T> whenDone(PrefyCallback<T> callback) {
+        return whenDone(callback, null);
+    }
+
+    /**
+     * call the callback when the result is ready, right away if it is ready
+     *
+     * @param callback - gets the result or the failure, a CancellationException if the future was cancelled
+     * @param executor - runs the callback, null for the main thread
+     * @return this future, for chaining
+     */
+    public PrefyFuture<T> whenDone(final PrefyCallback<T> callback, Executor executor) {
+        final Executor target = executor == null ? PrefyObservers.mainExecutor() : executor;
+        Runnable deliver = new Runnable() {
+            @Override
+            public void run() {
+                target.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        T result;
+                        Throwable failure;
+                        synchronized (PrefyFuture.this) {
+                            result = value;
+                            failure = state == CANCELLED ? new CancellationException() : error;
+                        }
+                        callback.onDone(result, failure);
+                    }
+                });
+            }
+        };
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(deliver);
+                return this;
+            }
+        }
+        deliver.run();
+        return this;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, null, true);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state == DONE || state == CANCELLED;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit))
+            throw new TimeoutException();
+        return result();
+    }
+
+    private synchronized T result() throws ExecutionException {
+        if (state == CANCELLED)
+            throw new CancellationException();
+        if (error != null)
+            throw new ExecutionException(error);
+        return value;
+    }
+}
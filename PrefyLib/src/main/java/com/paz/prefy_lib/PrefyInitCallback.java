@@ -0,0 +1,13 @@
+package com.paz.prefy_lib;
+
+/**
+ * Called when a Prefy that is loaded in the background is ready, see {@link Prefy#initAsync}
+ */
+public interface PrefyInitCallback {
+    /**
+     * called on the Prefy background thread
+     *
+     * @param prefy - the ready instance
+     */
+    void onReady(Prefy prefy);
+}
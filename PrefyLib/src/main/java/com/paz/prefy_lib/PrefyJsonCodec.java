@@ -0,0 +1,33 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * The default codec - saves the values as Gson json
+ */
+public class PrefyJsonCodec implements PrefyCodec {
+
+    @Override
+    public <T> String encode(T value, TypeAdapter<T> adapter) {
+        return adapter.toJson(value);
+    }
+
+    @Override
+    public <T> T decode(String data, TypeAdapter<T> adapter) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(data));
+        reader.setLenient(true);
+        return adapter.read(reader);
+    }
+
+    /**
+     * json has no tag, so it is the codec of every value that no other codec took
+     */
+    @Override
+    public boolean canDecode(String data) {
+        return true;
+    }
+}
@@ -0,0 +1,246 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.TypeAdapter;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Handle of a single key - its value type, Gson adapter and default are resolved once when the handle
+ * is created, so get and set do not look them up again. Create it once and keep it, for example in a
+ * static field: {@code Prefy.getInstance().key("user", User.class, defaultUser)}.
+ * An object value is decoded once - get returns the same instance until the saved value changes,
+ * so do not change the returned object, save a new one with set.
+ */
+public class PrefyKey<T> {
+    private static final int STRING = 0;
+    private static final int BOOLEAN = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int FLOAT = 4;
+    private static final int DOUBLE = 5;
+    private static final int STRING_SET = 6;
+    private static final int OBJECT = 7;
+
+    private final Prefy prefy;
+    private final String name;
+    private final T defValue;
+    private final int kind;
+    // null for values that are not saved as json
+    private final TypeAdapter<T> adapter;
+    private volatile Decoded<T> last;
+
+    /**
+     * the last decoded object and the saved String it was decoded from
+     */
+    private static class Decoded<T> {
+        final String raw;
+        final T value;
+
+        Decoded(String raw, T value) {
+            this.raw = raw;
+            this.value = value;
+        }
+    }
+
+    PrefyKey(Prefy prefy, String name, Type type, T defValue) {
+        if (name == null)
+            throw new IllegalArgumentException("name == null");
+        this.prefy = prefy;
+        this.name = name;
+        this.defValue = defValue;
+        this.kind = kindOf(type);
+        this.adapter = kind == OBJECT ? prefy.<T>adapter(type) : null;
+    }
+
+    /**
+     * @return the key of the value
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the value that get returns when the key not exist
+     */
+    public T defValue() {
+        return defValue;
+    }
+
+    /**
+     * @return if the key exist his value will returned else the default of this handle
+     */
+    @SuppressWarnings("unchecked")
+    public T get() {
+        switch (kind) {
+            case STRING:
+                return (T) prefy.getString(name, (String) defValue);
+            case STRING_SET:
+                return (T) prefy.getStringSet(name, (Set<String>) defValue);
+            case OBJECT:
+                return getObject();
+        }
+        // a primitive key without a default returns null when the key not exist
+        if (defValue == null && !prefy.isKeyExist(name))
+            return null;
+        switch (kind) {
+            case BOOLEAN:
+                return (T) (Boolean) prefy.getBoolean(name, defValue != null && (Boolean) defValue);
+            case INT:
+                return (T) (Integer) prefy.getInt(name, defValue == null ? 0 : (Integer) defValue);
+            case LONG:
+                return (T) (Long) prefy.getLong(name, defValue == null ? 0 : (Long) defValue);
+            case FLOAT:
+                return (T) (Float) prefy.getFloat(name, defValue == null ? 0 : (Float) defValue);
+            default:
+                return (T) (Double) prefy.getDouble(name, defValue == null ? 0 : (Double) defValue);
+        }
+    }
+
+    /**
+     * save the value in the background
+     *
+     * @param value - the value to save, null removes the key
+     */
+    public void set(T value) {
+        put(prefy.edit(), value).apply();
+    }
+
+    /**
+     * save the value in the background, it reads as not exist after the time to live
+     *
+     * @param value     - the value to save, null removes the key
+     * @param ttlMillis - time to live from now
+     */
+    public void set(T value, long ttlMillis) {
+        PrefyEditor editor = put(prefy.edit(), value);
+        if (value != null)
+            editor.expireAfter(name, ttlMillis);
+        editor.apply();
+    }
+
+    /**
+     * save the value
+     *
+     * @param value - the value to save, null removes the key
+     * @return Returns true if the new values were successfully written to persistent storage.
+     */
+    public boolean setSync(T value) {
+        return put(prefy.edit(), value).commit() == PrefyMsg.saved_successfully;
+    }
+
+    /**
+     * remove the key
+     */
+    public void remove() {
+        prefy.remove(name);
+    }
+
+    /**
+     * @return true if the key exist
+     */
+    public boolean exists() {
+        return prefy.isKeyExist(name);
+    }
+
+    /**
+     * call the observer with the new value on the main thread every time the key changes, until
+     * unobserve is called. The observer is held weakly - keep a reference to it
+     *
+     * @param observer - gets the handle and the new value
+     */
+    public void observe(PrefyKeyObserver<T> observer) {
+        observe(observer, null);
+    }
+
+    /**
+     * call the observer with the new value every time the key changes, until unobserve is called.
+     * Several changes within a frame are delivered once. The observer is held weakly - keep a reference to it
+     *
+     * @param observer - gets the handle and the new value
+     * @param executor - runs the observer, null for the main thread
+     */
+    public void observe(PrefyKeyObserver<T> observer, Executor executor) {
+        prefy.observers().add(name, false, observer, executor, null, this);
+    }
+
+    /**
+     * stop calling an observer that was added with observe
+     *
+     * @param observer - the observer to remove
+     */
+    public void unobserve(PrefyKeyObserver<T> observer) {
+        prefy.observers().remove(observer);
+    }
+
+    private T getObject() {
+        String raw = prefy.getString(name, "");
+        // the list and map changes are not part of raw, so the last decoded value can not be reused
+        if (prefy.hasDeltas(name))
+            return prefy.decodeWithDeltas(name, raw, defValue, adapter);
+        if (raw.isEmpty())
+            return defValue;
+        Decoded<T> last = this.last;
+        boolean hit = last != null && (last.raw == raw || last.raw.equals(raw));
+        PrefyMetrics metrics = prefy.metrics;
+        if (metrics != null)
+            metrics.onCacheLookup("key", hit);
+        if (hit)
+            return last.value;
+        T value = prefy.decodeStored(name, raw, defValue, adapter);
+        this.last = new Decoded<>(raw, value);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private PrefyEditor put(PrefyEditor editor, T value) {
+        if (value == null)
+            return editor.remove(name);
+        switch (kind) {
+            case STRING:
+                return editor.putString(name, (String) value);
+            case BOOLEAN:
+                return editor.putBoolean(name, (Boolean) value);
+            case INT:
+                return editor.putInt(name, (Integer) value);
+            case LONG:
+                return editor.putLong(name, (Long) value);
+            case FLOAT:
+                return editor.putFloat(name, (Float) value);
+            case DOUBLE:
+                return editor.putDouble(name, (Double) value);
+            case STRING_SET:
+                return editor.putStringSet(name, (Set<String>) value);
+            default:
+                return editor.putString(name, prefy.encode(value, adapter));
+        }
+    }
+
+    /**
+     * @return how values of the type are saved - the types that shared preferences supports are saved as they are
+     */
+    private static int kindOf(Type type) {
+        if (type == String.class)
+            return STRING;
+        if (type == Boolean.class || type == boolean.class)
+            return BOOLEAN;
+        if (type == Integer.class || type == int.class)
+            return INT;
+        if (type == Long.class || type == long.class)
+            return LONG;
+        if (type == Float.class || type == float.class)
+            return FLOAT;
+        if (type == Double.class || type == double.class)
+            return DOUBLE;
+        if (type == Set.class)
+            return STRING_SET;
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            if (parameterized.getRawType() == Set.class && parameterized.getActualTypeArguments()[0] == String.class)
+                return STRING_SET;
+        }
+        return OBJECT;
+    }
+}
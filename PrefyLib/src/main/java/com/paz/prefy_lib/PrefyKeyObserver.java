@@ -0,0 +1,12 @@
+package com.paz.prefy_lib;
+
+/**
+ * Called when the value of a {@link PrefyKey} changed, see {@link PrefyKey#observe}
+ */
+public interface PrefyKeyObserver<T> {
+    /**
+     * @param key   - the handle of the changed key
+     * @param value - the new value, the default of the handle if the key was removed
+     */
+    void onChanged(PrefyKey<T> key, T value);
+}
@@ -0,0 +1,97 @@
+package com.paz.prefy_lib;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the elements of a saved list one at a time, without loading the whole list to memory.
+ * The iterator closes itself after the last element - close it if you stop before the end.
+ */
+public class PrefyListIterator<T> implements Iterator<T>, Closeable {
+    private final JsonReader reader;
+    private final TypeAdapter<T> adapter;
+    private boolean done;
+
+    /**
+     * @param in - the saved json, or null for an empty list
+     */
+    PrefyListIterator(Reader in, TypeAdapter<T> adapter) {
+        this.adapter = adapter;
+        if (in == null) {
+            reader = null;
+            done = true;
+            return;
+        }
+        reader = new JsonReader(in);
+        reader.setLenient(true);
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                close();
+                return;
+            }
+            reader.beginArray();
+        } catch (IOException e) {
+            close();
+            throw new JsonIOException(e);
+        } catch (IllegalStateException e) {
+            close();
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (done)
+            return false;
+        try {
+            if (reader.hasNext())
+                return true;
+            reader.endArray();
+        } catch (IOException e) {
+            close();
+            throw new JsonIOException(e);
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        try {
+            return adapter.read(reader);
+        } catch (IOException e) {
+            close();
+            throw new JsonIOException(e);
+        } catch (IllegalStateException e) {
+            close();
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        if (reader == null)
+            return;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
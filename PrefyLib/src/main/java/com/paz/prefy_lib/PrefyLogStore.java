@@ -0,0 +1,512 @@
+package com.paz.prefy_lib;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Store that appends every write to a memory mapped log file, instead of rewriting the whole file like
+ * shared preferences does - a write costs the size of the change and not the size of the store.
+ * All the values are kept in memory, the log is read once when the store is opened.
+ * <p>
+ * Every write is one record - length, crc32 and the changed entries. A record that was cut by a crash
+ * (a truncated tail or a torn write) fails its check when the log is read, and it is dropped together
+ * with everything after it - so a write is either fully there or not at all.
+ * An async write is in the mapped memory when write returns, so it survives a crash of the app,
+ * a sync write is also forced to the disk.
+ * When most of the log is old values it is compacted on a background thread.
+ */
+public class PrefyLogStore implements PrefyStore, Closeable {
+    static final long DEFAULT_COMPACT_THRESHOLD = 256 * 1024;
+    private static final int MAGIC = 0x50524631;
+    private static final int HEADER = 4;
+    private static final int RECORD_HEADER = 8;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte REMOVED = 0;
+    private static final byte STRING = 1;
+    private static final byte STRING_SET = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+
+    private static ExecutorService compactor;
+
+    private final File file;
+    private final File compactFile;
+    private final long compactThreshold;
+    private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+    // size of the saved entry of every key, guarded by this
+    private final HashMap<String, Integer> sizes = new HashMap<>();
+    private final CopyOnWriteArrayList<PrefyStoreListener> listeners = new CopyOnWriteArrayList<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // end of the last record
+    private int position;
+    private long liveBytes;
+    private boolean compacting;
+
+    private final Runnable compactTask = new Runnable() {
+        @Override
+        public void run() {
+            compact();
+        }
+    };
+
+    /**
+     * open the log, or create it if the file does not exist. Reads the whole log, so open it off the main thread
+     *
+     * @param file - the log file
+     * @throws IOException if the file can not be opened or is not a log of this store
+     */
+    public PrefyLogStore(File file) throws IOException {
+        this(file, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param compactThreshold - compact when the old values take more than this and more than the live values
+     */
+    PrefyLogStore(File file, long compactThreshold) throws IOException {
+        this.file = file;
+        this.compactFile = new File(file.getPath() + ".compact");
+        this.compactThreshold = compactThreshold;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("can not create " + dir);
+        // a compaction that was cut before the rename - the log itself is complete
+        compactFile.delete();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), MIN_CAPACITY));
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, MAGIC);
+            position = HEADER;
+        } else if (magic == MAGIC) {
+            position = replay();
+        } else {
+            channel.close();
+            throw new IOException(file + " is not a prefy log");
+        }
+    }
+
+    /**
+     * read all the records into memory
+     *
+     * @return end of the last valid record
+     */
+    private int replay() {
+        int pos = HEADER;
+        CRC32 crc = new CRC32();
+        while (pos + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > buffer.capacity() - pos - RECORD_HEADER)
+                break;
+            byte[] payload = new byte[length];
+            buffer.position(pos + RECORD_HEADER);
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(pos + 4))
+                break;
+            LinkedHashMap<String, Object> changes = new LinkedHashMap<>();
+            // an entry takes at least 5 bytes
+            int[] entrySizes = new int[length / 5 + 1];
+            try {
+                decode(payload, changes, entrySizes);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            apply(changes, entrySizes);
+            pos += RECORD_HEADER + length;
+        }
+        // what is left of a cut record is written over by the next write
+        if (pos + 4 <= buffer.capacity())
+            buffer.putInt(pos, 0);
+        return pos;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Set<String>) value;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Float) value;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Boolean) value;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        // writes change the values under this lock, so a write is never seen in part
+        synchronized (this) {
+            return new HashMap<>(values);
+        }
+    }
+
+    @Override
+    public Map<String, ?> getAll(Collection<String> keys) {
+        HashMap<String, Object> result = new HashMap<>(keys.size() * 2);
+        // writes change the values under this lock
+        synchronized (this) {
+            for (String key : keys) {
+                Object value = values.get(key);
+                if (value != null)
+                    result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean write(Map<String, Object> changes, boolean sync) {
+        // an empty record would end the log
+        if (changes.isEmpty())
+            return !sync || force();
+        int[] entrySizes = new int[changes.size()];
+        byte[] payload = encode(changes, entrySizes);
+        synchronized (this) {
+            if (channel == null)
+                return false;
+            try {
+                append(payload);
+                if (sync)
+                    buffer.force();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            apply(changes, entrySizes);
+            long garbage = position - HEADER - liveBytes;
+            if (!compacting && garbage > compactThreshold && garbage > liveBytes) {
+                compacting = true;
+                compactor().execute(compactTask);
+            }
+        }
+        for (PrefyStoreListener listener : listeners) {
+            for (String key : changes.keySet())
+                listener.onChanged(key);
+        }
+        return true;
+    }
+
+    @Override
+    public void registerListener(PrefyStoreListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void unregisterListener(PrefyStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * force the log to the disk and close it, the values can still be read but not written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null)
+            return;
+        buffer.force();
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * @return true if the log was forced to the disk, false if it is closed
+     */
+    private synchronized boolean force() {
+        if (channel == null)
+            return false;
+        buffer.force();
+        return true;
+    }
+
+    /**
+     * append a record after the last one. The length is written last, until then the record ends the log
+     */
+    private void append(byte[] payload) throws IOException {
+        int end = position + RECORD_HEADER + payload.length;
+        if (end + 4 > buffer.capacity()) {
+            long capacity = Math.max(2L * buffer.capacity(), end + 4L);
+            if (capacity > Integer.MAX_VALUE)
+                throw new IOException("log is full");
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        buffer.position(position + RECORD_HEADER);
+        buffer.put(payload);
+        buffer.putInt(end, 0);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        position = end;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Map<String, Object> changes, int[] entrySizes) {
+        int i = 0;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String key = change.getKey();
+            Object value = change.getValue();
+            Integer old;
+            if (value == null) {
+                values.remove(key);
+                old = sizes.remove(key);
+            } else {
+                // copy, so a set that the caller changes later does not change the saved one
+                values.put(key, value instanceof Set ? new HashSet<>((Set<String>) value) : value);
+                old = sizes.put(key, entrySizes[i]);
+                liveBytes += entrySizes[i];
+            }
+            if (old != null)
+                liveBytes -= old;
+            i++;
+        }
+    }
+
+    /**
+     * write the live values to a new log and replace the old one with it.
+     * Writes that come in the meantime go to the old log, and are copied to the new one before the switch
+     */
+    void compact() {
+        HashMap<String, Object> snapshot;
+        int snapshotEnd;
+        synchronized (this) {
+            snapshot = new HashMap<>(values);
+            snapshotEnd = position;
+        }
+        try {
+            byte[] payload = encode(snapshot, new int[snapshot.size()]);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            FileOutputStream stream = new FileOutputStream(compactFile);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                out.writeInt(MAGIC);
+                if (payload.length > 0) {
+                    out.writeInt(payload.length);
+                    out.writeInt((int) crc.getValue());
+                    out.write(payload);
+                }
+                synchronized (this) {
+                    if (channel == null)
+                        return;
+                    byte[] tail = new byte[position - snapshotEnd];
+                    buffer.position(snapshotEnd);
+                    buffer.get(tail);
+                    out.write(tail);
+                    out.flush();
+                    stream.getFD().sync();
+                    stream.close();
+                    // mapped before the rename, so the switch can not fail after it
+                    FileChannel compactChannel = new RandomAccessFile(compactFile, "rw").getChannel();
+                    MappedByteBuffer compactBuffer;
+                    try {
+                        compactBuffer = compactChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                Math.max(compactChannel.size(), MIN_CAPACITY));
+                        if (!compactFile.renameTo(file))
+                            throw new IOException("can not rename " + compactFile);
+                    } catch (IOException e) {
+                        compactChannel.close();
+                        throw e;
+                    }
+                    channel.close();
+                    channel = compactChannel;
+                    buffer = compactBuffer;
+                    position = HEADER + (payload.length > 0 ? RECORD_HEADER + payload.length : 0) + tail.length;
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            compactFile.delete();
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * @return size of the log, with the old values that were not compacted yet
+     */
+    synchronized int size() {
+        return position;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] encode(Map<String, ?> changes, int[] entrySizes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            int i = 0;
+            for (Map.Entry<String, ?> change : changes.entrySet()) {
+                int start = out.size();
+                writeString(out, change.getKey());
+                Object value = change.getValue();
+                if (value == null) {
+                    out.writeByte(REMOVED);
+                } else if (value instanceof String) {
+                    out.writeByte(STRING);
+                    writeString(out, (String) value);
+                } else if (value instanceof Set) {
+                    Set<String> set = (Set<String>) value;
+                    out.writeByte(STRING_SET);
+                    out.writeInt(set.size());
+                    for (String item : set)
+                        writeString(out, item);
+                } else if (value instanceof Integer) {
+                    out.writeByte(INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(FLOAT);
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte(BOOLEAN);
+                    out.writeBoolean((Boolean) value);
+                } else {
+                    throw new IllegalArgumentException("can not save " + value.getClass());
+                }
+                entrySizes[i++] = out.size() - start;
+            }
+        } catch (IOException e) {
+            // never thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void decode(byte[] payload, Map<String, Object> changes, int[] entrySizes) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        int i = 0;
+        while (in.hasRemaining()) {
+            int start = in.position();
+            String key = readString(in);
+            Object value;
+            byte type = in.get();
+            switch (type) {
+                case REMOVED:
+                    value = null;
+                    break;
+                case STRING:
+                    value = readString(in);
+                    break;
+                case STRING_SET:
+                    int size = in.getInt();
+                    if (size < 0)
+                        throw new IllegalArgumentException("bad set size " + size);
+                    Set<String> set = new HashSet<>();
+                    for (int j = 0; j < size; j++)
+                        set.add(readString(in));
+                    value = set;
+                    break;
+                case INT:
+                    value = in.getInt();
+                    break;
+                case LONG:
+                    value = in.getLong();
+                    break;
+                case FLOAT:
+                    value = in.getFloat();
+                    break;
+                case BOOLEAN:
+                    value = in.get() != 0;
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad type " + type);
+            }
+            changes.put(key, value);
+            entrySizes[i++] = in.position() - start;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining())
+            throw new IllegalArgumentException("bad string length " + length);
+        String value = new String(in.array(), in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static synchronized ExecutorService compactor() {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Prefy-compact");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return compactor;
+    }
+}
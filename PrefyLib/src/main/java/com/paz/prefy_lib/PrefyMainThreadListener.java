@@ -0,0 +1,23 @@
+package com.paz.prefy_lib;
+
+/**
+ * Called on a sync write on the main thread and on a failure of an offloaded write, see {@link PrefyMainThreadPolicy}
+ */
+public interface PrefyMainThreadListener {
+    /**
+     * called on the main thread, before the write
+     *
+     * @param key   - key of the write, the first key if it writes several
+     * @param stack - stack of the call, to find the caller
+     */
+    void onSyncWrite(String key, Throwable stack);
+
+    /**
+     * called on the Prefy writer thread, when a sync write that OFFLOAD moved from the main thread was
+     * not saved to the disk - the Sync method already returned true
+     *
+     * @param key   - key of the write, the first key if it writes several
+     * @param error - why the write failed
+     */
+    void onOffloadedWriteFailed(String key, Throwable error);
+}
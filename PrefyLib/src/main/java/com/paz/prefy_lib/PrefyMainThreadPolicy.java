@@ -0,0 +1,23 @@
+package com.paz.prefy_lib;
+
+/**
+ * What Prefy does with a sync write (commit, putStringSync, putObjectSync and the other Sync methods)
+ * that is called on the main thread, see {@link Prefy#setMainThreadPolicy(PrefyMainThreadPolicy, PrefyMainThreadListener)}
+ */
+public enum PrefyMainThreadPolicy {
+    /**
+     * write to the disk on the main thread and wait for it, default
+     */
+    ALLOW,
+    /**
+     * write to the disk on the main thread, and report the key and the stack of the call
+     */
+    REPORT,
+    /**
+     * write the changes in memory and return right away - reads see them at once and the disk write
+     * runs on the Prefy writer thread. The Sync method returns true without knowing the result of the
+     * disk write - a failure is reported to {@link PrefyMainThreadListener#onOffloadedWriteFailed}, and
+     * {@link PrefyEditor#commitAsync()} returns it. The files of large values are written there too.
+     */
+    OFFLOAD
+}
@@ -0,0 +1,22 @@
+package com.paz.prefy_lib;
+
+/**
+ * Gets the timing of every Prefy call, see {@link Prefy#setMetrics(PrefyMetrics)}.
+ * Called on the thread of the call, so it should be fast - {@link PrefyMetricsRecorder} only counts.
+ */
+public interface PrefyMetrics {
+    /**
+     * @param operation     - the Prefy method, for example getInt, putObject or putObjectSync
+     * @param key           - the key, or null for a write of several keys
+     * @param nanos         - time of the call
+     * @param payloadLength - length of the saved String of the value (json for objects), 0 for primitives
+     * @param mainThread    - true if called on the main thread
+     */
+    void onCall(String operation, String key, long nanos, int payloadLength, boolean mainThread);
+
+    /**
+     * @param cache - "object" for the object cache, "key" for the decoded value of a PrefyKey
+     * @param hit   - true if the value was in the cache
+     */
+    void onCacheLookup(String cache, boolean hit);
+}
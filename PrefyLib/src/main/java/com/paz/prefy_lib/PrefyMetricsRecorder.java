@@ -0,0 +1,156 @@
+package com.paz.prefy_lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics that counts the calls in memory - a histogram of the time of every method, the length of
+ * the saved values, the calls on the main thread and the time each key took on the main thread.
+ * Take a {@link #snapshot()} to read or log them, for example when a frame was dropped.
+ */
+public class PrefyMetricsRecorder implements PrefyMetrics {
+    // keys that took the most main thread time, in the snapshot
+    private static final int TOP_KEYS = 20;
+
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> mainThreadNanosByKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, long[]> cacheLookups = new ConcurrentHashMap<>();
+    private final int maxKeys;
+
+    /**
+     * the counters of one method
+     */
+    private static class Operation {
+        // bucket i counts the calls that took less than 2^i nanos
+        final long[] histogram = new long[64];
+        long count;
+        long mainThreadCount;
+        long totalNanos;
+        long maxNanos;
+        long payloadTotal;
+        long payloadMax;
+
+        synchronized void add(long nanos, int payloadLength, boolean mainThread) {
+            histogram[64 - Long.numberOfLeadingZeros(Math.max(0, nanos))]++;
+            count++;
+            if (mainThread)
+                mainThreadCount++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            payloadTotal += payloadLength;
+            payloadMax = Math.max(payloadMax, payloadLength);
+        }
+
+        synchronized PrefyOperationStats stats(String name) {
+            return new PrefyOperationStats(name, count, mainThreadCount, totalNanos, maxNanos,
+                    Math.min(maxNanos, percentile(0.5)), Math.min(maxNanos, percentile(0.99)), payloadTotal, payloadMax);
+        }
+
+        private long percentile(double part) {
+            long rank = (long) Math.ceil(count * part);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0)
+                    return i == 0 ? 0 : 1L << Math.min(62, i);
+            }
+            return 0;
+        }
+    }
+
+    public PrefyMetricsRecorder() {
+        this(1000);
+    }
+
+    /**
+     * @param maxKeys - max number of keys whose main thread time is counted, keys after it are not counted
+     */
+    public PrefyMetricsRecorder(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public void onCall(String operation, String key, long nanos, int payloadLength, boolean mainThread) {
+        Operation counters = operations.get(operation);
+        if (counters == null) {
+            operations.putIfAbsent(operation, new Operation());
+            counters = operations.get(operation);
+        }
+        counters.add(nanos, payloadLength, mainThread);
+        if (mainThread && key != null) {
+            AtomicLong time = mainThreadNanosByKey.get(key);
+            if (time == null && mainThreadNanosByKey.size() < maxKeys) {
+                mainThreadNanosByKey.putIfAbsent(key, new AtomicLong());
+                time = mainThreadNanosByKey.get(key);
+            }
+            if (time != null)
+                time.addAndGet(nanos);
+        }
+    }
+
+    @Override
+    public void onCacheLookup(String cache, boolean hit) {
+        long[] lookups = cacheLookups.get(cache);
+        if (lookups == null) {
+            cacheLookups.putIfAbsent(cache, new long[2]);
+            lookups = cacheLookups.get(cache);
+        }
+        synchronized (lookups) {
+            lookups[hit ? 0 : 1]++;
+        }
+    }
+
+    /**
+     * @return copy of all the counters
+     */
+    public PrefyMetricsSnapshot snapshot() {
+        ArrayList<PrefyOperationStats> stats = new ArrayList<>();
+        for (Map.Entry<String, Operation> operation : operations.entrySet())
+            stats.add(operation.getValue().stats(operation.getKey()));
+        Collections.sort(stats, new Comparator<PrefyOperationStats>() {
+            @Override
+            public int compare(PrefyOperationStats a, PrefyOperationStats b) {
+                return Long.compare(b.totalNanos(), a.totalNanos());
+            }
+        });
+
+        List<Map.Entry<String, Long>> keys = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> key : mainThreadNanosByKey.entrySet())
+            keys.add(new HashMap.SimpleEntry<>(key.getKey(), key.getValue().get()));
+        Collections.sort(keys, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return Long.compare(b.getValue(), a.getValue());
+            }
+        });
+        LinkedHashMap<String, Long> topKeys = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> key : keys.subList(0, Math.min(TOP_KEYS, keys.size())))
+            topKeys.put(key.getKey(), key.getValue());
+
+        HashMap<String, Float> hitRates = new HashMap<>();
+        for (Map.Entry<String, long[]> cache : cacheLookups.entrySet()) {
+            long[] lookups = cache.getValue();
+            synchronized (lookups) {
+                long total = lookups[0] + lookups[1];
+                hitRates.put(cache.getKey(), total == 0 ? 0 : (float) lookups[0] / total);
+            }
+        }
+        return new PrefyMetricsSnapshot(stats, topKeys, hitRates);
+    }
+
+    /**
+     * drop all the counters
+     */
+    public void reset() {
+        operations.clear();
+        mainThreadNanosByKey.clear();
+        cacheLookups.clear();
+    }
+}
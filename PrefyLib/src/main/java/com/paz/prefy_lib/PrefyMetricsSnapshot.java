@@ -0,0 +1,52 @@
+package com.paz.prefy_lib;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The counters of a {@link PrefyMetricsRecorder} at one time
+ */
+public class PrefyMetricsSnapshot {
+    private final List<PrefyOperationStats> operations;
+    private final Map<String, Long> mainThreadNanosByKey;
+    private final Map<String, Float> cacheHitRates;
+
+    PrefyMetricsSnapshot(List<PrefyOperationStats> operations, Map<String, Long> mainThreadNanosByKey,
+                         Map<String, Float> cacheHitRates) {
+        this.operations = Collections.unmodifiableList(operations);
+        this.mainThreadNanosByKey = Collections.unmodifiableMap(mainThreadNanosByKey);
+        this.cacheHitRates = Collections.unmodifiableMap(cacheHitRates);
+    }
+
+    /**
+     * @return the counters of every method that was called, the slowest in total first
+     */
+    public List<PrefyOperationStats> operations() {
+        return operations;
+    }
+
+    /**
+     * @return the keys that took the most time on the main thread, with their time - the keys to look at for jank
+     */
+    public Map<String, Long> mainThreadNanosByKey() {
+        return mainThreadNanosByKey;
+    }
+
+    /**
+     * @return part of the lookups that were served by each cache, 0 to 1
+     */
+    public Map<String, Float> cacheHitRates() {
+        return cacheHitRates;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("PrefyMetricsSnapshot\n");
+        for (PrefyOperationStats operation : operations)
+            out.append("  ").append(operation).append('\n');
+        out.append("  main thread by key: ").append(mainThreadNanosByKey).append('\n');
+        out.append("  cache hit rates: ").append(cacheHitRates);
+        return out.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package com.paz.prefy_lib;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decoded objects, keyed by the preference key and the type it was decoded to.
+ * The size is counted in entries or in estimated bytes (2 bytes per char of the stored json).
+ */
+class PrefyObjectCache {
+    // returned by get when the key is not cached, null is a valid cached value
+    static final Object MISS = new Object();
+
+    private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, HashSet<CacheKey>> typesOfKey = new HashMap<>();
+    private final long maxSize;
+    private final boolean sizeInBytes;
+    private long size;
+    private long stamp;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxSize     - max entries, or max estimated bytes if sizeInBytes
+     * @param sizeInBytes - true to count the size in estimated bytes
+     */
+    PrefyObjectCache(long maxSize, boolean sizeInBytes) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize <= 0");
+        this.maxSize = maxSize;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * @return the cached value or MISS
+     */
+    synchronized Object get(String key, Type type) {
+        Entry entry = entries.get(new CacheKey(key, type));
+        if (entry == null) {
+            missCount++;
+            return MISS;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * the stamp must be taken before reading the stored value, so a value that was read
+     * before an invalidation will not be cached
+     *
+     * @return current stamp of the cache
+     */
+    synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * cache a decoded value
+     *
+     * @param stamp      - stamp() from before the stored value was read
+     * @param jsonLength - length of the stored json, used to estimate the size
+     */
+    synchronized void put(String key, Type type, Object value, int jsonLength, long stamp) {
+        if (stamp != this.stamp)
+            return;
+        long entrySize = sizeInBytes ? 2L * jsonLength : 1;
+        if (entrySize > maxSize)
+            return;
+        CacheKey cacheKey = new CacheKey(key, type);
+        Entry old = entries.put(cacheKey, new Entry(value, entrySize));
+        if (old != null) {
+            size -= old.size;
+        } else {
+            HashSet<CacheKey> types = typesOfKey.get(key);
+            if (types == null) {
+                types = new HashSet<>(2);
+                typesOfKey.put(key, types);
+            }
+            types.add(cacheKey);
+        }
+        size += entrySize;
+        trim();
+    }
+
+    /**
+     * drop all the cached values of the key, in any type
+     */
+    synchronized void invalidate(String key) {
+        stamp++;
+        HashSet<CacheKey> types = typesOfKey.remove(key);
+        if (types == null)
+            return;
+        for (CacheKey cacheKey : types)
+            size -= entries.remove(cacheKey).size;
+    }
+
+    synchronized void invalidateAll() {
+        stamp++;
+        entries.clear();
+        typesOfKey.clear();
+        size = 0;
+    }
+
+    synchronized PrefyCacheStats stats() {
+        return new PrefyCacheStats(hitCount, missCount, evictionCount, size, maxSize);
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<CacheKey, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<CacheKey, Entry> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue().size;
+            HashSet<CacheKey> types = typesOfKey.get(eldest.getKey().key);
+            types.remove(eldest.getKey());
+            if (types.isEmpty())
+                typesOfKey.remove(eldest.getKey().key);
+            evictionCount++;
+        }
+    }
+
+    private static final class CacheKey {
+        final String key;
+        final Type type;
+
+        CacheKey(String key, Type type) {
+            this.key = key;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey))
+                return false;
+            CacheKey other = (CacheKey) o;
+            return key.equals(other.key) && type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + type.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.paz.prefy_lib;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The listeners of a Prefy instance. Listens to the store only while there are listeners, holds
+ * them weakly, and collects the changes of a frame - a key that changed several times in a frame is
+ * delivered once, on the executor of the listener.
+ */
+class PrefyObservers {
+    // changes that come within this time are delivered together
+    static final long FRAME_MILLIS = 16;
+    private static Executor mainExecutor;
+
+    private final Prefy prefy;
+    private final ScheduledExecutorService scheduler;
+    private final ArrayList<Registration> registrations = new ArrayList<>();
+    private boolean listening;
+    private boolean scheduled;
+
+    private final PrefyStoreListener storeListener = new PrefyStoreListener() {
+        @Override
+        public void onChanged(String key) {
+            changed(key);
+        }
+    };
+
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    private class Registration {
+        final String key;
+        final boolean prefix;
+        // PrefyChangeListener, PrefyValueListener or PrefyKeyObserver
+        final WeakReference<Object> listener;
+        final Executor executor;
+        // type of the value for PrefyValueListener
+        final Type type;
+        // the handle of a PrefyKeyObserver
+        final PrefyKey<?> handle;
+        // keys that changed since the last delivery
+        LinkedHashSet<String> changed = new LinkedHashSet<>();
+
+        Registration(String key, boolean prefix, Object listener, Executor executor, Type type, PrefyKey<?> handle) {
+            this.key = key;
+            this.prefix = prefix;
+            this.listener = new WeakReference<>(listener);
+            this.executor = executor == null ? mainExecutor() : executor;
+            this.type = type;
+            this.handle = handle;
+        }
+
+        boolean matches(String changedKey) {
+            return prefix ? changedKey.startsWith(key) : changedKey.equals(key);
+        }
+
+        void deliver(final LinkedHashSet<String> keys) {
+            executor.execute(new Runnable() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void run() {
+                    Object target = listener.get();
+                    if (target == null)
+                        return;
+                    for (String changedKey : keys) {
+                        try {
+                            if (handle != null)
+                                notifyHandle((PrefyKeyObserver) target, handle);
+                            else if (type != null)
+                                ((PrefyValueListener<Object>) target).onChanged(changedKey, prefy.readObject("getObject", changedKey, null, type));
+                            else
+                                ((PrefyChangeListener) target).onChanged(changedKey);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param prefy     - the instance to listen to
+     * @param scheduler - runs the delivery at the end of a frame
+     */
+    PrefyObservers(Prefy prefy, ScheduledExecutorService scheduler) {
+        this.prefy = prefy;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param key      - the key, or the prefix of the keys
+     * @param prefix   - true if key is a prefix
+     * @param listener - held weakly
+     * @param executor - delivers the changes, null for the main thread
+     * @param type     - type of the value for PrefyValueListener, else null
+     * @param handle   - the handle of a PrefyKeyObserver, else null
+     */
+    void add(String key, boolean prefix, Object listener, Executor executor, Type type, PrefyKey<?> handle) {
+        if (key == null || listener == null)
+            throw new IllegalArgumentException("key and listener must not be null");
+        synchronized (this) {
+            registrations.add(new Registration(key, prefix, listener, executor, type, handle));
+            if (!listening) {
+                listening = true;
+                prefy.registerStoreListener(storeListener);
+            }
+        }
+    }
+
+    /**
+     * stop delivering changes to the listener, on all the keys it observes
+     */
+    void remove(Object listener) {
+        synchronized (this) {
+            Iterator<Registration> iterator = registrations.iterator();
+            while (iterator.hasNext()) {
+                Object target = iterator.next().listener.get();
+                if (target == null || target == listener)
+                    iterator.remove();
+            }
+        }
+        stopIfEmpty();
+    }
+
+    private void changed(String key) {
+        // a list or map change is a change of the list or the map
+        if (key != null && key.startsWith(PrefyDeltas.PREFIX))
+            key = key.substring(PrefyDeltas.PREFIX.length());
+        synchronized (this) {
+            boolean matched = false;
+            Iterator<Registration> iterator = registrations.iterator();
+            while (iterator.hasNext()) {
+                Registration registration = iterator.next();
+                if (registration.listener.get() == null) {
+                    iterator.remove();
+                } else if (key == null) {
+                    // all the keys were removed - a prefix listener gets null, the others their key
+                    registration.changed.add(registration.prefix && registration.handle == null && registration.type == null ? null : registration.key);
+                    matched = true;
+                } else if (registration.matches(key)) {
+                    registration.changed.add(key);
+                    matched = true;
+                }
+            }
+            if (matched && !scheduled) {
+                scheduled = true;
+                scheduler.schedule(deliver, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        stopIfEmpty();
+    }
+
+    private void deliver() {
+        ArrayList<Registration> ready = new ArrayList<>();
+        ArrayList<LinkedHashSet<String>> keys = new ArrayList<>();
+        synchronized (this) {
+            scheduled = false;
+            for (Registration registration : registrations) {
+                if (!registration.changed.isEmpty()) {
+                    ready.add(registration);
+                    keys.add(registration.changed);
+                    registration.changed = new LinkedHashSet<>();
+                }
+            }
+        }
+        for (int i = 0; i < ready.size(); i++)
+            ready.get(i).deliver(keys.get(i));
+    }
+
+    private synchronized void stopIfEmpty() {
+        if (listening && registrations.isEmpty()) {
+            listening = false;
+            prefy.unregisterStoreListener(storeListener);
+        }
+    }
+
+    private static <T> void notifyHandle(PrefyKeyObserver<T> observer, PrefyKey<T> handle) {
+        observer.onChanged(handle, handle.get());
+    }
+
+    static synchronized Executor mainExecutor() {
+        if (mainExecutor == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            mainExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+        return mainExecutor;
+    }
+}
@@ -0,0 +1,99 @@
+package com.paz.prefy_lib;
+
+/**
+ * Counters of one Prefy method, see {@link PrefyMetricsSnapshot}
+ */
+public class PrefyOperationStats {
+    private final String operation;
+    private final long count;
+    private final long mainThreadCount;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long payloadTotal;
+    private final long payloadMax;
+
+    PrefyOperationStats(String operation, long count, long mainThreadCount, long totalNanos, long maxNanos,
+                        long p50Nanos, long p99Nanos, long payloadTotal, long payloadMax) {
+        this.operation = operation;
+        this.count = count;
+        this.mainThreadCount = mainThreadCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.payloadTotal = payloadTotal;
+        this.payloadMax = payloadMax;
+    }
+
+    /**
+     * @return the Prefy method
+     */
+    public String operation() {
+        return operation;
+    }
+
+    /**
+     * @return number of calls
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return number of calls on the main thread
+     */
+    public long mainThreadCount() {
+        return mainThreadCount;
+    }
+
+    /**
+     * @return time of all the calls together
+     */
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return time of the slowest call
+     */
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return median time of a call, rounded up to a power of 2 (at most the max)
+     */
+    public long p50Nanos() {
+        return p50Nanos;
+    }
+
+    /**
+     * @return time that 99% of the calls took at most, rounded up to a power of 2
+     */
+    public long p99Nanos() {
+        return p99Nanos;
+    }
+
+    /**
+     * @return average length of the saved String of a value
+     */
+    public long averagePayload() {
+        return count == 0 ? 0 : payloadTotal / count;
+    }
+
+    /**
+     * @return length of the largest saved String of a value
+     */
+    public long maxPayload() {
+        return payloadMax;
+    }
+
+    @Override
+    public String toString() {
+        return operation + "{count=" + count + ", main=" + mainThreadCount + ", p50=" + p50Nanos / 1000 + "us, p99="
+                + p99Nanos / 1000 + "us, max=" + maxNanos / 1000 + "us, payload avg=" + averagePayload()
+                + " max=" + payloadMax + "}";
+    }
+}
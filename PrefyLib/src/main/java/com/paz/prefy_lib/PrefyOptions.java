@@ -0,0 +1,204 @@
+package com.paz.prefy_lib;
+
+/**
+ * Options of a Prefy store, see {@link Prefy#open(android.content.Context, String, PrefyOptions)}
+ */
+public class PrefyOptions {
+    private boolean encrypted;
+    private boolean appendLog;
+    private int plaintextCacheSize;
+    private long plaintextCacheTtl;
+    private PrefyCodec codec = new PrefyJsonCodec();
+    private long readTimeout = Long.MAX_VALUE;
+    private PrefyCompressor compressor;
+    private int compressionMinLength;
+    // -1 for the default of the store
+    private int largeValueMinLength = -1;
+    private int shards = 1;
+    private PrefyShardRouter shardRouter = PrefyShardedStore.HASH;
+
+    /**
+     * @param encrypted - true if need encryption, default false
+     * @return this options, for chaining
+     */
+    public PrefyOptions setEncrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+        return this;
+    }
+
+    /**
+     * save the values in a memory mapped log file that gets only the changes, instead of shared preferences
+     * that rewrites its whole file on every write - see {@link PrefyLogStore}. Can not be encrypted.
+     * Values that were saved in shared preferences before are not moved to the log.
+     *
+     * @param appendLog - true to use the append log, default false
+     * @return this options, for chaining
+     */
+    public PrefyOptions setAppendLog(boolean appendLog) {
+        this.appendLog = appendLog;
+        return this;
+    }
+
+    /**
+     * for encrypted stores - keep the decrypted values in memory, so a value is decrypted on its first
+     * read only and not on every read. The values are dropped on {@link Prefy#lock()} and when the app
+     * goes to the background.
+     *
+     * @param maxEntries - max number of values to keep, 0 to disable, default 0
+     * @param ttlMillis  - how long a value is kept after it was read, 0 to keep it until the app goes to the background
+     * @return this options, for chaining
+     */
+    public PrefyOptions setPlaintextCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maxEntries < 0");
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("ttlMillis < 0");
+        this.plaintextCacheSize = maxEntries;
+        this.plaintextCacheTtl = ttlMillis;
+        return this;
+    }
+
+    /**
+     * @param codec - the codec that saves objects, arrays, lists and maps, default PrefyJsonCodec
+     * @return this options, for chaining
+     */
+    public PrefyOptions setCodec(PrefyCodec codec) {
+        if (codec == null)
+            throw new IllegalArgumentException("codec == null");
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * compress saved objects, arrays, lists and maps from the given length with deflate. Values that
+     * were saved before are still read, and so are compressed values after compression is disabled.
+     *
+     * @param minLength - compress values from this length in chars, 0 to disable, default 0
+     * @return this options, for chaining
+     */
+    public PrefyOptions setCompression(int minLength) {
+        return setCompression(minLength, new PrefyDeflateCompressor());
+    }
+
+    /**
+     * compress saved objects, arrays, lists and maps from the given length with the given compressor
+     *
+     * @param minLength  - compress values from this length in chars, 0 to disable, default 0
+     * @param compressor - for example a faster algorithm than the default deflate
+     * @return this options, for chaining
+     */
+    public PrefyOptions setCompression(int minLength, PrefyCompressor compressor) {
+        if (minLength < 0)
+            throw new IllegalArgumentException("minLength < 0");
+        if (compressor == null)
+            throw new IllegalArgumentException("compressor == null");
+        if (compressor.name().isEmpty() || compressor.name().indexOf(':') >= 0)
+            throw new IllegalArgumentException("compressor name must not be empty or contain ':'");
+        this.compressionMinLength = minLength;
+        this.compressor = minLength == 0 ? null : compressor;
+        return this;
+    }
+
+    /**
+     * save objects, arrays, lists and maps from the given length in files of their own, so shared
+     * preferences holds only a small pointer and does not load and parse them with every other value.
+     * They are read from the file only when requested. The file is written on the Prefy writer thread,
+     * or by the commit that saves the value. Not used for encrypted stores, the files are not encrypted.
+     *
+     * @param minLength - save values from this length in chars in files, 0 to disable, default 64K
+     * @return this options, for chaining
+     */
+    public PrefyOptions setLargeValueMinLength(int minLength) {
+        if (minLength < 0)
+            throw new IllegalArgumentException("minLength < 0");
+        this.largeValueMinLength = minLength;
+        return this;
+    }
+
+    /**
+     * spread the keys over several files by their hash, so writes to different files do not wait for
+     * each other and every write rewrites a smaller file. Keep the same number of shards - a key is
+     * looked for only in its file. Values that were saved in the store before are not moved.
+     *
+     * @param shards - number of files, 1 to keep all the keys in one file, default 1
+     * @return this options, for chaining
+     */
+    public PrefyOptions setShards(int shards) {
+        return setShards(shards, PrefyShardedStore.HASH);
+    }
+
+    /**
+     * same as setShards(int) but the file of a key is picked by the given router, for example by the prefix of the key
+     *
+     * @param shards - number of files, 1 to keep all the keys in one file, default 1
+     * @param router - picks the file of a key
+     * @return this options, for chaining
+     */
+    public PrefyOptions setShards(int shards, PrefyShardRouter router) {
+        if (shards < 1)
+            throw new IllegalArgumentException("shards < 1");
+        if (router == null)
+            throw new IllegalArgumentException("router == null");
+        this.shards = shards;
+        this.shardRouter = router;
+        return this;
+    }
+
+    /**
+     * for stores that are loaded in the background (initAsync, openAsync) - how long a read waits for
+     * the store before it returns its default value. 0 returns the default right away
+     *
+     * @param readTimeoutMillis - max wait of a read, default wait until ready
+     * @return this options, for chaining
+     */
+    public PrefyOptions setReadTimeout(long readTimeoutMillis) {
+        if (readTimeoutMillis < 0)
+            throw new IllegalArgumentException("readTimeoutMillis < 0");
+        this.readTimeout = readTimeoutMillis;
+        return this;
+    }
+
+    boolean isEncrypted() {
+        return encrypted;
+    }
+
+    boolean isAppendLog() {
+        return appendLog;
+    }
+
+    int getPlaintextCacheSize() {
+        return plaintextCacheSize;
+    }
+
+    long getPlaintextCacheTtl() {
+        return plaintextCacheTtl;
+    }
+
+    PrefyCodec getCodec() {
+        return codec;
+    }
+
+    PrefyCompressor getCompressor() {
+        return compressor;
+    }
+
+    int getCompressionMinLength() {
+        return compressionMinLength;
+    }
+
+    int getLargeValueMinLength() {
+        return largeValueMinLength;
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    PrefyShardRouter getShardRouter() {
+        return shardRouter;
+    }
+
+    long getReadTimeout() {
+        return readTimeout;
+    }
+}
@@ -0,0 +1,226 @@
+package com.paz.prefy_lib;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Copy of the int, long, float and boolean values of a store in primitive arrays - an open addressing
+ * table of interned keys, a kind per key and the value bits - so the typed getters read them without
+ * boxing and without allocating. Doubles are saved as longs, so they are in the long column.
+ * Writes drop the written keys, and a key that is not in the table is read from the store and added -
+ * a write does not put its value in the table, as writes of the same key from other threads may reach
+ * the store in another order than they reach the table.
+ */
+class PrefyPrimitiveSnapshot {
+    private static final byte EMPTY = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DELETED = 5;
+
+    private String[] keys = new String[16];
+    private byte[] kinds = new byte[16];
+    private long[] bits = new long[16];
+    // keys and deleted slots, kept under half of the table
+    private int used;
+    // changes on every write, a value that was read from the store before one of them is not added
+    private long generation;
+
+    final PrefyStoreListener invalidator = new PrefyStoreListener() {
+        @Override
+        public void onChanged(String key) {
+            if (key == null)
+                clear();
+            else
+                remove(key);
+        }
+    };
+
+    /**
+     * @return pass it to fill, after reading all the values of the store
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * add all the values of the store, unless a key was written since they were read
+     *
+     * @param all - all the values of the store
+     */
+    synchronized void fill(Map<String, ?> all, long readGeneration) {
+        if (readGeneration != generation)
+            return;
+        for (Map.Entry<String, ?> entry : all.entrySet())
+            update(entry.getKey(), entry.getValue());
+    }
+
+    int getInt(String key, int defValue, PrefyStore store) {
+        long readGeneration;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && kinds[slot] == INT)
+                return (int) bits[slot];
+            readGeneration = generation;
+        }
+        int value = store.getInt(key, defValue);
+        if (store.contains(key))
+            learn(key, INT, value, readGeneration);
+        return value;
+    }
+
+    long getLong(String key, long defValue, PrefyStore store) {
+        long readGeneration;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && kinds[slot] == LONG)
+                return bits[slot];
+            readGeneration = generation;
+        }
+        long value = store.getLong(key, defValue);
+        if (store.contains(key))
+            learn(key, LONG, value, readGeneration);
+        return value;
+    }
+
+    float getFloat(String key, float defValue, PrefyStore store) {
+        long readGeneration;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && kinds[slot] == FLOAT)
+                return Float.intBitsToFloat((int) bits[slot]);
+            readGeneration = generation;
+        }
+        float value = store.getFloat(key, defValue);
+        if (store.contains(key))
+            learn(key, FLOAT, Float.floatToRawIntBits(value), readGeneration);
+        return value;
+    }
+
+    boolean getBoolean(String key, boolean defValue, PrefyStore store) {
+        long readGeneration;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && kinds[slot] == BOOLEAN)
+                return bits[slot] != 0;
+            readGeneration = generation;
+        }
+        boolean value = store.getBoolean(key, defValue);
+        if (store.contains(key))
+            learn(key, BOOLEAN, value ? 1 : 0, readGeneration);
+        return value;
+    }
+
+    /**
+     * drop the written keys, after the store was written
+     */
+    synchronized void remove(Collection<String> keys) {
+        for (String key : keys)
+            remove(key);
+    }
+
+    synchronized void remove(String key) {
+        int slot = find(key);
+        if (slot >= 0)
+            kinds[slot] = DELETED;
+        generation++;
+    }
+
+    synchronized void clear() {
+        keys = new String[16];
+        kinds = new byte[16];
+        bits = new long[16];
+        used = 0;
+        generation++;
+    }
+
+    private void update(String key, Object value) {
+        if (value instanceof Integer)
+            put(key, INT, (Integer) value);
+        else if (value instanceof Long)
+            put(key, LONG, (Long) value);
+        else if (value instanceof Float)
+            put(key, FLOAT, Float.floatToRawIntBits((Float) value));
+        else if (value instanceof Boolean)
+            put(key, BOOLEAN, (Boolean) value ? 1 : 0);
+        else
+            remove(key);
+    }
+
+    /**
+     * add a value that was read from the store, unless the key was written since the read started
+     */
+    private synchronized void learn(String key, byte kind, long value, long readGeneration) {
+        if (readGeneration == generation)
+            put(key, kind, value);
+    }
+
+    private void put(String key, byte kind, long value) {
+        int slot = find(key);
+        if (slot < 0) {
+            if ((used + 1) * 2 > keys.length) {
+                rehash();
+                slot = find(key);
+            }
+            slot = ~slot;
+            if (kinds[slot] == EMPTY)
+                used++;
+            keys[slot] = key.intern();
+        }
+        kinds[slot] = kind;
+        bits[slot] = value;
+        generation++;
+    }
+
+    /**
+     * @return slot of the key, or ~slot to add it at if it is not in the table
+     */
+    private int find(String key) {
+        int mask = keys.length - 1;
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        int free = -1;
+        while (true) {
+            byte kind = kinds[slot];
+            if (kind == EMPTY)
+                return ~(free >= 0 ? free : slot);
+            if (kind == DELETED) {
+                if (free < 0)
+                    free = slot;
+            } else {
+                String k = keys[slot];
+                if (k == key || k.equals(key))
+                    return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * drop the deleted slots, and double the table if it is more than a quarter full
+     */
+    private void rehash() {
+        String[] oldKeys = keys;
+        byte[] oldKinds = kinds;
+        long[] oldBits = bits;
+        int live = 0;
+        for (byte kind : oldKinds) {
+            if (kind != EMPTY && kind != DELETED)
+                live++;
+        }
+        int capacity = live * 4 > oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+        keys = new String[capacity];
+        kinds = new byte[capacity];
+        bits = new long[capacity];
+        used = live;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKinds[i] != EMPTY && oldKinds[i] != DELETED) {
+                int slot = ~find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                kinds[slot] = oldKinds[i];
+                bits[slot] = oldBits[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.paz.prefy_lib;
+
+/**
+ * Picks the shard of a key, see {@link PrefyOptions#setShards(int, PrefyShardRouter)}
+ */
+public interface PrefyShardRouter {
+    /**
+     * must return the same shard for a key every time, also after the app restarts
+     *
+     * @param key    - the key
+     * @param shards - number of shards
+     * @return shard of the key, 0 to shards - 1
+     */
+    int shardOf(String key, int shards);
+}
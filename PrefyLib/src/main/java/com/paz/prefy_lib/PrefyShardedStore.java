@@ -0,0 +1,179 @@
+package com.paz.prefy_lib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Store that spreads the keys over several stores - shards - so writes to different shards do not
+ * wait for each other and every write rewrites only the file of its shard.
+ * A key is always in the same shard, by its hash or by a router of your own, and the list and map
+ * changes of a key are in its shard. A write that changes keys of several shards is written to each of
+ * them under a lock that reads of several shards wait for, so in memory it is never seen in part -
+ * but after a crash some of the shards may have it and some not.
+ */
+public class PrefyShardedStore implements PrefyStore {
+    /**
+     * spreads the keys by their hash
+     */
+    public static final PrefyShardRouter HASH = new PrefyShardRouter() {
+        @Override
+        public int shardOf(String key, int shards) {
+            int hash = key.hashCode();
+            hash ^= hash >>> 16;
+            return (hash & Integer.MAX_VALUE) % shards;
+        }
+    };
+
+    private final PrefyStore[] shards;
+    private final PrefyShardRouter router;
+    // writes of one shard and reads of several shards share it, writes of several shards hold it alone
+    private final ReentrantReadWriteLock spanning = new ReentrantReadWriteLock();
+
+    /**
+     * @param shards - the stores, keep the order - a key is looked for only in its shard
+     * @param router - picks the shard of a key, for example HASH
+     */
+    public PrefyShardedStore(PrefyStore[] shards, PrefyShardRouter router) {
+        if (shards.length == 0)
+            throw new IllegalArgumentException("no shards");
+        this.shards = shards.clone();
+        this.router = router;
+    }
+
+    PrefyStore[] shards() {
+        return shards.clone();
+    }
+
+    private PrefyStore shardOf(String key) {
+        if (key.startsWith(PrefyDeltas.PREFIX))
+            key = key.substring(PrefyDeltas.PREFIX.length());
+        int shard = router.shardOf(key, shards.length);
+        if (shard < 0 || shard >= shards.length)
+            throw new IllegalStateException("shard " + shard + " of " + key + " is not in 0.." + (shards.length - 1));
+        return shards[shard];
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return shardOf(key).getString(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        return shardOf(key).getStringSet(key, defValue);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return shardOf(key).getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return shardOf(key).getLong(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        return shardOf(key).getFloat(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return shardOf(key).getBoolean(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return shardOf(key).contains(key);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        HashMap<String, Object> all = new HashMap<>();
+        spanning.readLock().lock();
+        try {
+            for (PrefyStore shard : shards)
+                all.putAll(shard.getAll());
+        } finally {
+            spanning.readLock().unlock();
+        }
+        return all;
+    }
+
+    @Override
+    public Map<String, ?> getAll(Collection<String> keys) {
+        HashMap<PrefyStore, ArrayList<String>> byShard = new HashMap<>();
+        for (String key : keys) {
+            PrefyStore shard = shardOf(key);
+            ArrayList<String> shardKeys = byShard.get(shard);
+            if (shardKeys == null) {
+                shardKeys = new ArrayList<>();
+                byShard.put(shard, shardKeys);
+            }
+            shardKeys.add(key);
+        }
+        HashMap<String, Object> values = new HashMap<>();
+        if (byShard.size() == 1) {
+            Map.Entry<PrefyStore, ArrayList<String>> shard = byShard.entrySet().iterator().next();
+            values.putAll(shard.getKey().getAll(shard.getValue()));
+            return values;
+        }
+        spanning.readLock().lock();
+        try {
+            for (Map.Entry<PrefyStore, ArrayList<String>> shard : byShard.entrySet())
+                values.putAll(shard.getKey().getAll(shard.getValue()));
+        } finally {
+            spanning.readLock().unlock();
+        }
+        return values;
+    }
+
+    @Override
+    public boolean write(Map<String, Object> changes, boolean sync) {
+        if (changes.isEmpty()) {
+            // waits for the earlier writes of all the shards
+            boolean saved = true;
+            for (PrefyStore shard : shards)
+                saved &= shard.write(changes, sync);
+            return saved;
+        }
+        HashMap<PrefyStore, HashMap<String, Object>> byShard = new HashMap<>();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            PrefyStore shard = shardOf(change.getKey());
+            HashMap<String, Object> shardChanges = byShard.get(shard);
+            if (shardChanges == null) {
+                shardChanges = new HashMap<>();
+                byShard.put(shard, shardChanges);
+            }
+            shardChanges.put(change.getKey(), change.getValue());
+        }
+        Lock lock = byShard.size() == 1 ? spanning.readLock() : spanning.writeLock();
+        lock.lock();
+        try {
+            boolean saved = true;
+            for (Map.Entry<PrefyStore, HashMap<String, Object>> shard : byShard.entrySet())
+                saved &= shard.getKey().write(shard.getValue(), sync);
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void registerListener(PrefyStoreListener listener) {
+        for (PrefyStore shard : shards)
+            shard.registerListener(listener);
+    }
+
+    @Override
+    public void unregisterListener(PrefyStoreListener listener) {
+        for (PrefyStore shard : shards)
+            shard.unregisterListener(listener);
+    }
+}
@@ -0,0 +1,129 @@
+package com.paz.prefy_lib;
+
+import android.content.SharedPreferences;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store over shared preferences - the default store of Prefy.
+ * Note that shared preferences rewrites its whole file on every write.
+ */
+public class PrefySharedPreferencesStore implements PrefyStore {
+    private final SharedPreferences sharedPreferences;
+    // shared preferences keeps only a weak reference to its listeners
+    private final Map<PrefyStoreListener, SharedPreferences.OnSharedPreferenceChangeListener> listeners = new HashMap<>();
+
+    public PrefySharedPreferencesStore(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return sharedPreferences.getString(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        return sharedPreferences.getStringSet(key, defValue);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return sharedPreferences.getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return sharedPreferences.getLong(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        return sharedPreferences.getFloat(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return sharedPreferences.getBoolean(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return sharedPreferences.contains(key);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return sharedPreferences.getAll();
+    }
+
+    @Override
+    public Map<String, ?> getAll(Collection<String> keys) {
+        // a single copy under the lock of shared preferences, so the values are from the same write.
+        // Encrypted shared preferences decrypts every value for it - there is no get of a value of an
+        // unknown type that decrypts one key - so the plaintext cache serves repeated bulk reads
+        Map<String, ?> all = sharedPreferences.getAll();
+        HashMap<String, Object> values = new HashMap<>(keys.size() * 2);
+        for (String key : keys) {
+            Object value = all.get(key);
+            if (value != null)
+                values.put(key, value);
+        }
+        return values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean write(Map<String, Object> changes, boolean sync) {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String key = change.getKey();
+            Object value = change.getValue();
+            if (value == null)
+                editor.remove(key);
+            else if (value instanceof String)
+                editor.putString(key, (String) value);
+            else if (value instanceof Boolean)
+                editor.putBoolean(key, (Boolean) value);
+            else if (value instanceof Integer)
+                editor.putInt(key, (Integer) value);
+            else if (value instanceof Float)
+                editor.putFloat(key, (Float) value);
+            else if (value instanceof Long)
+                editor.putLong(key, (Long) value);
+            else
+                editor.putStringSet(key, (Set<String>) value);
+        }
+        if (sync)
+            return editor.commit();
+        editor.apply();
+        return true;
+    }
+
+    @Override
+    public void registerListener(final PrefyStoreListener listener) {
+        SharedPreferences.OnSharedPreferenceChangeListener changeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                listener.onChanged(key);
+            }
+        };
+        synchronized (listeners) {
+            listeners.put(listener, changeListener);
+        }
+        sharedPreferences.registerOnSharedPreferenceChangeListener(changeListener);
+    }
+
+    @Override
+    public void unregisterListener(PrefyStoreListener listener) {
+        SharedPreferences.OnSharedPreferenceChangeListener changeListener;
+        synchronized (listeners) {
+            changeListener = listeners.remove(listener);
+        }
+        if (changeListener != null)
+            sharedPreferences.unregisterOnSharedPreferenceChangeListener(changeListener);
+    }
+}
@@ -0,0 +1,281 @@
+package com.paz.prefy_lib;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Files next to the shared preferences file that hold values that are too large for it.
+ * The shared preferences entry of such a value holds only a pointer - the prefix and the file name.
+ * Every write goes to a new file, so a reader of the old value is never affected by a write.
+ * Files are read through a memory mapping. A file can be written later on another thread - until it is
+ * written its content is read from memory.
+ */
+class PrefySidecar {
+    static final String POINTER_PREFIX = "~prefy-file:";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File dir;
+    // pointer to the content of a file that is not written yet
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    // the error of the last write later that failed, until it is taken
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private volatile boolean mayHaveFiles;
+    private volatile boolean checked;
+
+    /**
+     * writes the content of a value
+     */
+    interface Content {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * the content of a file that is not written yet
+     */
+    private static class Pending {
+        final String data;
+        boolean written;
+
+        Pending(String data) {
+            this.data = data;
+        }
+    }
+
+    PrefySidecar(File dir) {
+        this.dir = dir;
+    }
+
+    static boolean isPointer(String value) {
+        return value != null && value.startsWith(POINTER_PREFIX);
+    }
+
+    /**
+     * write the content to a new file - to a temp file first, and rename it when it is complete
+     *
+     * @return the pointer to save in shared preferences
+     */
+    String write(Content content) throws IOException {
+        String name = UUID.randomUUID().toString();
+        write(name, content);
+        return POINTER_PREFIX + name;
+    }
+
+    private void write(String name, Content content) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("can not create " + dir);
+        mayHaveFiles = true;
+        File tmp = new File(dir, name + ".tmp");
+        FileOutputStream stream = new FileOutputStream(tmp);
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+            content.writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            tmp.delete();
+            throw e;
+        }
+        stream.close();
+        if (!tmp.renameTo(new File(dir, name))) {
+            tmp.delete();
+            throw new IOException("can not rename " + tmp);
+        }
+    }
+
+    /**
+     * write a value that was already encoded to a new file
+     *
+     * @return the pointer to save in shared preferences
+     */
+    String write(final String data) throws IOException {
+        return write(new Content() {
+            @Override
+            public void writeTo(Writer out) throws IOException {
+                out.write(data);
+            }
+        });
+    }
+
+    /**
+     * write a value that was already encoded to a new file on the given thread - the pointer can be
+     * saved and read right away, its content is read from memory until the file is written
+     *
+     * @param executor - the thread that writes the file
+     * @return the pointer to save in shared preferences
+     */
+    String writeLater(String data, Executor executor) {
+        mayHaveFiles = true;
+        final String pointer = POINTER_PREFIX + UUID.randomUUID().toString();
+        pending.put(pointer, new Pending(data));
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    persist(pointer);
+                } catch (IOException e) {
+                    // the content stays in memory, so this process still reads it
+                    e.printStackTrace();
+                    failure.set(e);
+                }
+            }
+        });
+        return pointer;
+    }
+
+    /**
+     * write the file of a pointer from write later now, if it is not written yet - before a commit saves
+     * the pointer
+     */
+    void persist(String pointer) throws IOException {
+        final Pending file = pending.get(pointer);
+        if (file == null)
+            return;
+        synchronized (file) {
+            // written, or deleted before it was written
+            if (file.written || pending.get(pointer) != file)
+                return;
+            write(file(pointer).getName(), new Content() {
+                @Override
+                public void writeTo(Writer out) throws IOException {
+                    out.write(file.data);
+                }
+            });
+            file.written = true;
+        }
+        // deleted while it was written
+        if (pending.remove(pointer) == null)
+            file(pointer).delete();
+    }
+
+    /**
+     * @return the error of a write later that failed since the last call, or null
+     */
+    IOException takeFailure() {
+        return failure.getAndSet(null);
+    }
+
+    /**
+     * open the file of the pointer - the file is memory mapped, so it is read straight from the page
+     * cache and only the part that was read is loaded
+     *
+     * @throws FileNotFoundException if the file was deleted, after its value was replaced
+     */
+    BufferedReader open(String pointer) throws IOException {
+        Pending later = pending.get(pointer);
+        if (later != null)
+            return new BufferedReader(new StringReader(later.data));
+        RandomAccessFile file = new RandomAccessFile(file(pointer), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size == 0)
+                return new BufferedReader(new StringReader(""));
+            // the mapping stays valid after the file is closed, and after it is deleted
+            return new BufferedReader(new MappedReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+        } finally {
+            file.close();
+        }
+    }
+
+    long length(String pointer) {
+        Pending later = pending.get(pointer);
+        return later != null ? later.data.length() : file(pointer).length();
+    }
+
+    void delete(String pointer) {
+        pending.remove(pointer);
+        file(pointer).delete();
+    }
+
+    /**
+     * delete the files that no saved value points to - left by a crash during a write, or by a write
+     * that was replaced before it was saved
+     *
+     * @param pointers     - all the saved pointers
+     * @param minAgeMillis - newer files may belong to a write that is not saved yet, so they are kept
+     * @return number of deleted files
+     */
+    int deleteOrphans(Set<String> pointers, long minAgeMillis) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+        long before = System.currentTimeMillis() - minAgeMillis;
+        int deleted = 0;
+        for (File file : files) {
+            if (file.lastModified() < before && !pointers.contains(POINTER_PREFIX + file.getName()) && file.delete())
+                deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * @return false if there are surely no files, so writes do not need to look for old pointers
+     */
+    boolean mayHaveFiles() {
+        if (!checked) {
+            String[] names = dir.list();
+            if (names != null && names.length > 0)
+                mayHaveFiles = true;
+            checked = true;
+        }
+        return mayHaveFiles;
+    }
+
+    /**
+     * decodes utf-8 from a mapped file
+     */
+    private static class MappedReader extends Reader {
+        private final ByteBuffer in;
+        private final CharsetDecoder decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private boolean flushed;
+
+        MappedReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) {
+            if (length == 0)
+                return 0;
+            CharBuffer out = CharBuffer.wrap(chars, offset, length);
+            if (in.hasRemaining())
+                decoder.decode(in, out, true);
+            if (!in.hasRemaining() && !flushed && out.hasRemaining())
+                flushed = decoder.flush(out).isUnderflow();
+            int read = out.position() - offset;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private File file(String pointer) {
+        // only a name inside the dir, even if someone saved a bad pointer
+        return new File(dir, new File(pointer.substring(POINTER_PREFIX.length())).getName());
+    }
+}
@@ -0,0 +1,132 @@
+package com.paz.prefy_lib;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Values of several keys that were read together, see {@link Prefy#getAll} and {@link Prefy#snapshot}.
+ * The values do not change after it was taken - all of them are from the same version of the store.
+ * Objects are decoded when they are read from the snapshot. A large value that is saved in a file of
+ * its own (see PrefyOptions.setLargeValueMinLength) and was replaced since the snapshot was taken
+ * returns the default value, as its file was deleted.
+ */
+public class PrefySnapshot {
+    private final Prefy prefy;
+    private final Map<String, Object> values;
+
+    PrefySnapshot(Prefy prefy, Map<String, Object> values) {
+        this.prefy = prefy;
+        this.values = values;
+    }
+
+    /**
+     * @return the keys that exist in the snapshot
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    /**
+     * @param key - key to check
+     * @return true if the key existed when the snapshot was taken
+     */
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Boolean) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Float) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    public double getDouble(String key, double defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : Double.longBitsToDouble((Long) value);
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @return if the key exist his value will returned else devValue
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Set<String>) value;
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @param type     the type of the excepted object - for example MyObject.class
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T getObject(String key, T defValue, Class<T> type) {
+        return getObject(key, defValue, (Type) type);
+    }
+
+    /**
+     * @param key      - key for the requested value
+     * @param defValue - default in case the key not exist
+     * @param type     the type of the excepted object - for example new TypeToken&lt;List&lt;MyObject&gt;&gt;(){}.getType()
+     * @return if the key exist his value will returned else devValue
+     */
+    public <T> T getObject(String key, T defValue, Type type) {
+        String json = getString(key, "");
+        if (json.isEmpty())
+            return defValue;
+        return prefy.decodeSnapshot(json, defValue, prefy.<T>adapter(type));
+    }
+}
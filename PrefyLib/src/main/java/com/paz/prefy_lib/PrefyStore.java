@@ -0,0 +1,57 @@
+package com.paz.prefy_lib;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The storage under a Prefy - where the values are read from and written to.
+ * The default is {@link PrefySharedPreferencesStore}, {@link PrefyLogStore} appends only the changes to a log file.
+ * Values are String, Boolean, Integer, Float, Long or Set of String, like in shared preferences.
+ */
+public interface PrefyStore {
+
+    String getString(String key, String defValue);
+
+    Set<String> getStringSet(String key, Set<String> defValue);
+
+    int getInt(String key, int defValue);
+
+    long getLong(String key, long defValue);
+
+    float getFloat(String key, float defValue);
+
+    boolean getBoolean(String key, boolean defValue);
+
+    boolean contains(String key);
+
+    /**
+     * @return copy of all the saved keys and values
+     */
+    Map<String, ?> getAll();
+
+    /**
+     * read the values of several keys together, no write is seen in part
+     *
+     * @param keys - the keys to read
+     * @return copy of the saved values of the keys, without the keys that not exist
+     */
+    Map<String, ?> getAll(Collection<String> keys);
+
+    /**
+     * write all the changes together - readers see either none or all of them after a crash
+     *
+     * @param changes - key to new value, null value removes the key
+     * @param sync    - true to wait until the changes are on the disk, false to write them in the background.
+     *                An empty sync write waits until the writes before it are on the disk
+     * @return true if the changes were written (always true if not sync)
+     */
+    boolean write(Map<String, Object> changes, boolean sync);
+
+    /**
+     * @param listener - called after a key was changed, the store keeps a strong reference until it is unregistered
+     */
+    void registerListener(PrefyStoreListener listener);
+
+    void unregisterListener(PrefyStoreListener listener);
+}
@@ -0,0 +1,11 @@
+package com.paz.prefy_lib;
+
+/**
+ * Called when a value of a {@link PrefyStore} changed
+ */
+public interface PrefyStoreListener {
+    /**
+     * @param key - the changed key, null if all the keys were removed
+     */
+    void onChanged(String key);
+}
@@ -0,0 +1,15 @@
+package com.paz.prefy_lib;
+
+/**
+ * Computes the new value of a key from its current value, see {@link Prefy#update}
+ */
+public interface PrefyUpdater<T> {
+    /**
+     * called while the key is locked, keep it short.
+     * When the object cache is enabled current is the cached instance - return a new object instead of changing it
+     *
+     * @param current - the saved value, or null if the key not exist
+     * @return the value to save
+     */
+    T update(T current);
+}
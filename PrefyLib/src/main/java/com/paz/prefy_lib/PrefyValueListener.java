@@ -0,0 +1,12 @@
+package com.paz.prefy_lib;
+
+/**
+ * Gets the new value of an observed key, see {@link Prefy#observeValue}
+ */
+public interface PrefyValueListener<T> {
+    /**
+     * @param key   - the changed key
+     * @param value - the new value, null if the key was removed
+     */
+    void onChanged(String key, T value);
+}
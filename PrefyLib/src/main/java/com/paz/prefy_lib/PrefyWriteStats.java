@@ -0,0 +1,42 @@
+package com.paz.prefy_lib;
+
+/**
+ * Snapshot of the counters of write coalescing, see {@link Prefy#enableWriteCoalescing(long, long)}
+ */
+public class PrefyWriteStats {
+    private final long putsReceived;
+    private final long commitsIssued;
+    private final long pendingKeys;
+
+    PrefyWriteStats(long putsReceived, long commitsIssued, long pendingKeys) {
+        this.putsReceived = putsReceived;
+        this.commitsIssued = commitsIssued;
+        this.pendingKeys = pendingKeys;
+    }
+
+    /**
+     * @return number of writes (puts, removes and batches) since coalescing was enabled
+     */
+    public long putsReceived() {
+        return putsReceived;
+    }
+
+    /**
+     * @return number of times the changes were actually written to shared preferences
+     */
+    public long commitsIssued() {
+        return commitsIssued;
+    }
+
+    /**
+     * @return number of keys that wait for the next flush
+     */
+    public long pendingKeys() {
+        return pendingKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "PrefyWriteStats{puts=" + putsReceived + ", commits=" + commitsIssued + ", pending=" + pendingKeys + "}";
+    }
+}
@@ -0,0 +1,190 @@
+package com.paz.prefy_lib;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Order and batching of PrefyAsync - gets see the puts that were called before them, and puts that
+ * wait together are written with one commit.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PrefyAsyncTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File dir;
+    private CountingStore store;
+    private Prefy prefy;
+    private PrefyAsync async;
+
+    /**
+     * a log store that counts its commits
+     */
+    private static class CountingStore extends PrefyLogStore {
+        final AtomicInteger commits = new AtomicInteger();
+
+        CountingStore(File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public boolean write(Map<String, Object> changes, boolean sync) {
+            if (sync && !changes.isEmpty())
+                commits.incrementAndGet();
+            return super.write(changes, sync);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("prefy-async").toFile();
+        store = new CountingStore(new File(dir, "store.log"));
+        Context context = ApplicationProvider.getApplicationContext();
+        prefy = Prefy.open(context, "async-" + System.nanoTime(), store, new PrefyOptions());
+        async = prefy.async();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void getSeesThePutsBeforeIt() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            async.putInt("count", i);
+            assertEquals(i, (int) async.getInt("count", -1).get(5, TimeUnit.SECONDS));
+        }
+        async.remove("count");
+        assertEquals(-1, (int) async.getInt("count", -1).get(5, TimeUnit.SECONDS));
+        assertFalse(store.contains("count"));
+    }
+
+    @Test
+    public void queuedPutsAreWrittenWithOneCommit() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        // holds the io thread, so the next puts wait together
+        PrefyFuture<PrefyMsg> first = async.batch(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                editor.putString("first", "value");
+            }
+        });
+        List<PrefyFuture<PrefyMsg>> puts = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            puts.add(async.putString("key_" + i, "value " + i));
+        release.countDown();
+
+        assertEquals(PrefyMsg.saved_successfully, first.get(5, TimeUnit.SECONDS));
+        for (PrefyFuture<PrefyMsg> put : puts)
+            assertEquals(PrefyMsg.saved_successfully, put.get(5, TimeUnit.SECONDS));
+        assertEquals(2, store.commits.get());
+        assertEquals("value 99", store.getString("key_99", null));
+    }
+
+    @Test
+    public void cancelledPutIsNotWritten() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        async.batch(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        PrefyFuture<PrefyMsg> cancelled = async.putString("cancelled", "value");
+        PrefyFuture<PrefyMsg> kept = async.putString("kept", "value");
+        assertTrue(cancelled.cancel(false));
+        release.countDown();
+
+        assertEquals(PrefyMsg.saved_successfully, kept.get(5, TimeUnit.SECONDS));
+        assertTrue(cancelled.isCancelled());
+        assertFalse(store.contains("cancelled"));
+        assertFalse(cancelled.cancel(false));
+    }
+
+    @Test
+    public void failedPutDoesNotStopTheOthers() throws Exception {
+        PrefyFuture<PrefyMsg> failed = async.batch(new PrefyBatch() {
+            @Override
+            public void edit(PrefyEditor editor) {
+                editor.putString("partial", "value");
+                throw new IllegalStateException("broken");
+            }
+        });
+        PrefyFuture<PrefyMsg> kept = async.putString("kept", "value");
+
+        assertEquals(PrefyMsg.saved_successfully, kept.get(5, TimeUnit.SECONDS));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("the batch should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(store.contains("partial"));
+    }
+
+    @Test
+    public void whenDoneGetsTheResult() throws Exception {
+        async.putObject("list", new ArrayList<>(Collections.singletonList("a")));
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        async.<String>getList("list", null, String.class).whenDone(new PrefyCallback<ArrayList<String>>() {
+            @Override
+            public void onDone(ArrayList<String> value, Throwable error) {
+                results.add(value);
+                results.add(error);
+                done.countDown();
+            }
+        }, DIRECT);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("a"), results.get(0));
+        assertEquals(null, results.get(1));
+    }
+}
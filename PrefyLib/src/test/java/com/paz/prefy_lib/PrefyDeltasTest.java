@@ -0,0 +1,202 @@
+package com.paz.prefy_lib;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * List and map changes - reads merge them with the saved value, a fold writes them into it, and a
+ * write of the value drops them, also when it runs together with appends.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PrefyDeltasTest {
+    private File dir;
+    private PrefyLogStore store;
+    private Prefy prefy;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("prefy-deltas").toFile();
+        store = new PrefyLogStore(new File(dir, "store.log"));
+        Context context = ApplicationProvider.getApplicationContext();
+        prefy = Prefy.open(context, "deltas-" + System.nanoTime(), store, new PrefyOptions());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void listChangesAreMergedWithTheValue() {
+        prefy.putArrayListSync("list", new ArrayList<>(Arrays.asList(1, 2, 3)));
+
+        prefy.appendToList("list", 4);
+        prefy.removeFromList("list", 2);
+        prefy.appendToList("new", "a");
+
+        assertEquals(Arrays.asList(1, 3, 4), prefy.getList("list", null, Integer.class));
+        assertEquals(Arrays.asList("a"), prefy.getList("new", null, String.class));
+        // the saved value is not rewritten
+        assertEquals("[1,2,3]", store.getString("list", null));
+        PrefySnapshot snapshot = prefy.snapshot();
+        assertEquals(3, snapshot.getObject("list", null, Integer[].class).length);
+        assertFalse(snapshot.contains(PrefyDeltas.PREFIX + "list"));
+        assertFalse(snapshot.contains(PrefyDeltas.KEY));
+    }
+
+    @Test
+    public void mapChangesAreMergedWithTheValue() {
+        HashMap<String, Integer> scores = new HashMap<>();
+        scores.put("level_1", 100);
+        prefy.putHashMapSync("scores", scores);
+
+        prefy.putInMap("scores", "level_2", 200);
+        prefy.putInMap("scores", "level_1", 150);
+        prefy.removeFromMap("scores", "level_2");
+        prefy.putInMap("new", 7, "seven");
+
+        HashMap<String, Integer> merged = prefy.getMap("scores", null, String.class, Integer.class);
+        assertEquals(1, merged.size());
+        assertEquals(150, (int) merged.get("level_1"));
+        assertEquals("seven", prefy.getMap("new", null, Integer.class, String.class).get(7));
+    }
+
+    @Test
+    public void foldWritesTheChangesAndKeepsTheTimeToLive() throws Exception {
+        assertEquals(PrefyMsg.saved_successfully, prefy.edit().putString("list", "[]").expireAfter("list", 60 * 60 * 1000).commit());
+
+        for (int i = 0; i < PrefyDeltas.FOLD_RECORDS; i++)
+            prefy.appendToList("list", i);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.contains(PrefyDeltas.PREFIX + "list")) {
+            if (System.currentTimeMillis() > deadline)
+                fail("the changes were not folded");
+            Thread.sleep(10);
+        }
+
+        List<Integer> list = prefy.getList("list", null, Integer.class);
+        assertEquals(PrefyDeltas.FOLD_RECORDS, list.size());
+        assertEquals(PrefyDeltas.FOLD_RECORDS - 1, (int) list.get(PrefyDeltas.FOLD_RECORDS - 1));
+        assertTrue(store.getString("list", "").startsWith("[0,1,2"));
+        assertTrue(store.getString(PrefyExpiry.KEY, "").contains("\"list\""));
+        assertFalse(store.contains(PrefyDeltas.KEY));
+    }
+
+    @Test
+    public void writeOrRemoveOfTheValueDropsTheChanges() {
+        prefy.appendToList("list", 1);
+        prefy.putArrayListSync("list", new ArrayList<>(Arrays.asList(9)));
+
+        assertEquals(Arrays.asList(9), prefy.getList("list", null, Integer.class));
+        assertFalse(store.contains(PrefyDeltas.PREFIX + "list"));
+
+        prefy.appendToList("list", 10);
+        assertEquals(Arrays.asList(9, 10), prefy.getList("list", null, Integer.class));
+        prefy.remove("list");
+
+        assertNull(prefy.getList("list", null, Integer.class));
+        assertFalse(store.contains(PrefyDeltas.PREFIX + "list"));
+        assertFalse(store.contains(PrefyDeltas.KEY));
+    }
+
+    /**
+     * one thread appends 0, 1, 2... and another replaces the list with a marker - the number of appends
+     * that returned before the replace, as -1 - n. An append that returned before a replace must not be
+     * in the list after it, and the last replace must not be overridden by a fold.
+     */
+    @Test
+    public void appendsDoNotComeBackAfterTheValueIsReplaced() throws Exception {
+        final int appends = 3000;
+        final AtomicInteger appended = new AtomicInteger();
+        final AtomicInteger lastMarker = new AtomicInteger(Integer.MIN_VALUE);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread appender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < appends; i++) {
+                    prefy.appendToList("list", i);
+                    appended.set(i + 1);
+                }
+            }
+        });
+        Thread replacer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (appended.get() < appends) {
+                    int marker = -1 - appended.get();
+                    prefy.putArrayList("list", new ArrayList<>(Arrays.asList(marker)));
+                    lastMarker.set(marker);
+                    Thread.yield();
+                }
+            }
+        });
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (appended.get() < appends && failure.get() == null) {
+                    String error = check(prefy.getList("list", null, Integer.class));
+                    if (error != null)
+                        failure.set(error);
+                }
+            }
+        });
+        appender.start();
+        replacer.start();
+        reader.start();
+        appender.join();
+        replacer.join();
+        reader.join();
+
+        assertNull(failure.get());
+        List<Integer> list = prefy.getList("list", null, Integer.class);
+        assertNull(check(list));
+        assertEquals(lastMarker.get(), (int) list.get(0));
+    }
+
+    /**
+     * @return why the list is wrong, or null
+     */
+    private static String check(List<Integer> list) {
+        if (list == null || list.isEmpty() || list.get(0) >= 0)
+            return null;
+        // the appends before the marker were replaced
+        int next = -1 - list.get(0);
+        for (int i = 1; i < list.size(); i++) {
+            if (list.get(i) < next)
+                return "append " + list.get(i) + " is after the replace of the first " + next + " in " + list;
+            next = list.get(i) + 1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.paz.prefy_lib;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Crash safety of the append log - a log that was cut or torn by a crash keeps every complete write
+ * before the damage and nothing after it.
+ */
+public class PrefyLogStoreTest {
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("prefy-log").toFile();
+        file = new File(dir, "store.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void valuesSurviveReopen() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file);
+        store.write(changes("string", "value", "int", 7, "long", 8L), false);
+        HashMap<String, Object> more = changes("float", 1.5f, "boolean", true);
+        more.put("set", new HashSet<>(Arrays.asList("a", "b")));
+        store.write(more, true);
+        store.write(changes("int", null), false);
+        store.close();
+
+        store = new PrefyLogStore(file);
+        assertEquals("value", store.getString("string", null));
+        assertEquals(-1, store.getInt("int", -1));
+        assertFalse(store.contains("int"));
+        assertEquals(8L, store.getLong("long", 0));
+        assertEquals(1.5f, store.getFloat("float", 0), 0);
+        assertTrue(store.getBoolean("boolean", false));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), store.getStringSet("set", null));
+        assertEquals(5, store.getAll().size());
+        store.close();
+    }
+
+    @Test
+    public void truncatedTailDropsOnlyTheCutWrite() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file);
+        store.write(changes("first", 1), true);
+        int end = store.size();
+        store.write(changes("second", 2, "third", 3), true);
+        int cut = store.size() - 3;
+        store.close();
+
+        truncate(cut);
+        store = new PrefyLogStore(file);
+        assertEquals(1, store.getInt("first", 0));
+        assertFalse(store.contains("second"));
+        assertFalse(store.contains("third"));
+        assertEquals(end, store.size());
+
+        // new writes go after the last complete one
+        store.write(changes("fourth", 4), true);
+        store.close();
+        store = new PrefyLogStore(file);
+        assertEquals(1, store.getInt("first", 0));
+        assertEquals(4, store.getInt("fourth", 0));
+        assertFalse(store.contains("second"));
+        store.close();
+    }
+
+    @Test
+    public void tornWriteDropsItAndEverythingAfter() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file);
+        store.write(changes("first", "a"), true);
+        int torn = store.size();
+        store.write(changes("second", "b", "third", "c"), true);
+        store.write(changes("fourth", "d"), true);
+        store.close();
+
+        // a byte in the middle of the second write never reached the disk
+        flip(torn + 12);
+        store = new PrefyLogStore(file);
+        assertEquals("a", store.getString("first", null));
+        assertNull(store.getString("second", null));
+        assertNull(store.getString("third", null));
+        assertNull(store.getString("fourth", null));
+        assertEquals(torn, store.size());
+        store.close();
+    }
+
+    @Test
+    public void zeroLengthHeaderEndsTheLog() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file);
+        store.write(changes("first", 1), true);
+        int end = store.size();
+        store.write(changes("second", 2), true);
+        store.close();
+
+        // the length of the second write was not written yet
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(end);
+        raf.writeInt(0);
+        raf.close();
+        store = new PrefyLogStore(file);
+        assertEquals(1, store.getInt("first", 0));
+        assertFalse(store.contains("second"));
+        store.close();
+    }
+
+    @Test
+    public void compactionKeepsLiveValues() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file, Long.MAX_VALUE);
+        for (int i = 0; i < 1000; i++)
+            store.write(changes("counter", i, "name", "name " + i), false);
+        store.write(changes("removed", "x"), false);
+        store.write(changes("removed", null), false);
+        int before = store.size();
+        store.compact();
+        assertTrue(store.size() < before / 100);
+        store.write(changes("after", true), false);
+        store.close();
+
+        assertFalse(new File(file.getPath() + ".compact").exists());
+        store = new PrefyLogStore(file);
+        assertEquals(999, store.getInt("counter", -1));
+        assertEquals("name 999", store.getString("name", null));
+        assertTrue(store.getBoolean("after", false));
+        assertFalse(store.contains("removed"));
+        store.close();
+    }
+
+    @Test
+    public void growsPastTheFirstMapping() throws IOException {
+        PrefyLogStore store = new PrefyLogStore(file, Long.MAX_VALUE);
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        for (int i = 0; i < 500; i++)
+            store.write(changes("key" + i, large), false);
+        store.close();
+
+        store = new PrefyLogStore(file);
+        assertEquals(500, store.getAll().size());
+        assertEquals(large, store.getString("key499", null));
+        store.close();
+    }
+
+    @Test
+    public void otherFileIsRejected() throws IOException {
+        Files.write(file.toPath(), "<map></map>".getBytes("UTF-8"));
+        try {
+            new PrefyLogStore(file);
+            fail("opened a file that is not a log");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("not a prefy log"));
+        }
+    }
+
+    private static HashMap<String, Object> changes(Object... keysAndValues) {
+        HashMap<String, Object> changes = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            changes.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        return changes;
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(length);
+        raf.close();
+    }
+
+    private void flip(long position) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(position);
+        int b = raf.read();
+        raf.seek(position);
+        raf.write(b ^ 0xff);
+        raf.close();
+    }
+}
@@ -0,0 +1,239 @@
+package com.paz.prefy_lib;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sync writes on the main thread - the test thread is the main looper thread. A sync write of the
+ * store is the disk access, so the store records the threads it was called on.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PrefyMainThreadPolicyTest {
+    private File dir;
+    private RecordingStore store;
+    private String name;
+    private Prefy prefy;
+    private final List<String> reportedKeys = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Throwable> reportedStacks = Collections.synchronizedList(new ArrayList<Throwable>());
+    private final List<String> failedKeys = Collections.synchronizedList(new ArrayList<String>());
+    private final PrefyMainThreadListener listener = new PrefyMainThreadListener() {
+        @Override
+        public void onSyncWrite(String key, Throwable stack) {
+            reportedKeys.add(key);
+            reportedStacks.add(stack);
+        }
+
+        @Override
+        public void onOffloadedWriteFailed(String key, Throwable error) {
+            failedKeys.add(key);
+        }
+    };
+
+    /**
+     * a log store that records the threads of its sync writes
+     */
+    private static class RecordingStore extends PrefyLogStore {
+        final List<Thread> syncWriteThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        // sync writes wait for it, if set
+        volatile CountDownLatch syncWriteGate;
+        volatile boolean failSyncWrites;
+
+        RecordingStore(File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public boolean write(Map<String, Object> changes, boolean sync) {
+            if (sync) {
+                syncWriteThreads.add(Thread.currentThread());
+                CountDownLatch gate = syncWriteGate;
+                if (gate != null) {
+                    try {
+                        gate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            return super.write(changes, sync) && !(sync && failSyncWrites);
+        }
+
+        boolean wroteOnMainThread() {
+            synchronized (syncWriteThreads) {
+                for (Thread thread : syncWriteThreads) {
+                    if (thread == Looper.getMainLooper().getThread())
+                        return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        assertTrue(Looper.myLooper() == Looper.getMainLooper());
+        dir = Files.createTempDirectory("prefy-main-thread").toFile();
+        store = new RecordingStore(new File(dir, "store.log"));
+        Context context = ApplicationProvider.getApplicationContext();
+        name = "main-thread-" + System.nanoTime();
+        prefy = Prefy.open(context, name, store, new PrefyOptions());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void offloadDoesNotWriteToTheDiskOnTheMainThread() throws Exception {
+        prefy.setMainThreadPolicy(PrefyMainThreadPolicy.OFFLOAD);
+
+        assertTrue(prefy.putStringSync("name", "value"));
+        assertTrue(prefy.putIntSync("count", 7));
+        assertTrue(prefy.putObjectSync("list", new ArrayList<>(Arrays.asList("a", "b"))));
+        assertEquals(PrefyMsg.saved_successfully, prefy.edit().putLong("a", 1).remove("count").commit());
+        // the changes are read right away, before they are on the disk
+        assertEquals("value", prefy.getString("name", null));
+        assertEquals(-1, prefy.getInt("count", -1));
+        assertEquals(1L, prefy.getLong("a", 0));
+
+        assertEquals(PrefyMsg.saved_successfully, prefy.edit().putBoolean("flag", true).commitAsync().get(5, TimeUnit.SECONDS));
+        assertFalse(store.wroteOnMainThread());
+        assertFalse(store.syncWriteThreads.isEmpty());
+        for (Thread thread : store.syncWriteThreads)
+            assertEquals("Prefy-writer", thread.getName());
+        assertTrue(store.getBoolean("flag", false));
+        assertEquals("value", store.getString("name", null));
+        assertFalse(store.contains("count"));
+    }
+
+    @Test
+    public void offloadWritesTheFilesOfLargeValuesOnTheWriterThread() throws Exception {
+        store.close();
+        store = new RecordingStore(new File(dir, "large.log"));
+        Context context = ApplicationProvider.getApplicationContext();
+        name = "main-thread-large-" + System.nanoTime();
+        prefy = Prefy.open(context, name, store, new PrefyOptions().setLargeValueMinLength(64));
+        prefy.setMainThreadPolicy(PrefyMainThreadPolicy.OFFLOAD);
+        ArrayList<String> large = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            large.add("element " + i);
+
+        // the writer thread waits in this write, so the file can not be written before the checks
+        CountDownLatch gate = new CountDownLatch(1);
+        store.syncWriteGate = gate;
+        Future<PrefyMsg> before = prefy.edit().putInt("count", 1).commitAsync();
+        assertTrue(prefy.putObjectSync("large", large));
+        assertEquals(large, prefy.getList("large", null, String.class));
+        assertEquals(0, sidecarFiles().length);
+
+        gate.countDown();
+        assertEquals(PrefyMsg.saved_successfully, before.get(5, TimeUnit.SECONDS));
+        assertEquals(PrefyMsg.saved_successfully, prefy.edit().commitAsync().get(5, TimeUnit.SECONDS));
+        assertEquals(1, sidecarFiles().length);
+        assertEquals(large, prefy.getList("large", null, String.class));
+        assertFalse(store.wroteOnMainThread());
+    }
+
+    @Test
+    public void failedOffloadedWriteIsReported() throws Exception {
+        prefy.setMainThreadPolicy(PrefyMainThreadPolicy.OFFLOAD, listener);
+        store.failSyncWrites = true;
+
+        assertTrue(prefy.putStringSync("name", "value"));
+
+        // runs after the offloaded write on the writer thread
+        assertEquals(PrefyMsg.not_saved, prefy.edit().commitAsync().get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("name"), failedKeys);
+    }
+
+    @Test
+    public void reportGivesTheKeyAndTheStackOfTheCaller() {
+        prefy.setMainThreadPolicy(PrefyMainThreadPolicy.REPORT, listener);
+
+        assertTrue(prefy.putIntSync("count", 1));
+
+        assertEquals(Collections.singletonList("count"), reportedKeys);
+        boolean hasCaller = false;
+        for (StackTraceElement element : reportedStacks.get(0).getStackTrace())
+            hasCaller |= element.getMethodName().equals("reportGivesTheKeyAndTheStackOfTheCaller");
+        assertTrue(hasCaller);
+        // reported, but still written on the main thread
+        assertTrue(store.wroteOnMainThread());
+        assertEquals(1, store.getInt("count", 0));
+    }
+
+    private File[] sidecarFiles() {
+        Context context = ApplicationProvider.getApplicationContext();
+        File[] files = new File(context.getFilesDir(), "Prefy/" + context.getPackageName() + "-Prefy-" + name).listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().endsWith(".tmp");
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    @Test
+    public void allowWritesOnTheMainThread() {
+        assertTrue(prefy.putStringSync("name", "value"));
+
+        assertTrue(store.wroteOnMainThread());
+        assertTrue(reportedKeys.isEmpty());
+    }
+
+    @Test
+    public void syncWritesOnOtherThreadsAreNotReported() throws Exception {
+        prefy.setMainThreadPolicy(PrefyMainThreadPolicy.OFFLOAD, listener);
+        final boolean[] saved = new boolean[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                saved[0] = prefy.putStringSync("name", "value");
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(saved[0]);
+        assertTrue(reportedKeys.isEmpty());
+        assertEquals(Collections.singletonList(thread), store.syncWriteThreads);
+        assertNotNull(store.getString("name", null));
+    }
+}